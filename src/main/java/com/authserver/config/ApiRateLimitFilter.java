@@ -0,0 +1,73 @@
+package com.authserver.config;
+
+import com.authserver.service.RateLimitEngine;
+import com.authserver.service.RateLimitPolicy;
+import com.authserver.util.ClientIpUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client request limit applied before Spring Security, so rejected requests never reach the
+ * security chains, Jackson or JPA. The engine answers with a primitive and the 429 body is a
+ * precomputed byte array; header values come from a small cache of decimal strings.
+ */
+public class ApiRateLimitFilter extends OncePerRequestFilter {
+
+    private static final byte[] REJECTED_BODY =
+        "{\"success\":false,\"message\":\"Too many requests. Please try again later.\",\"data\":null}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final String[] DECIMALS = new String[1024];
+
+    static {
+        for (int i = 0; i < DECIMALS.length; i++) {
+            DECIMALS[i] = Integer.toString(i);
+        }
+    }
+
+    private final RateLimitEngine rateLimitEngine;
+    private final RateLimitPolicy policy;
+    private final String limit;
+
+    public ApiRateLimitFilter(RateLimitEngine rateLimitEngine, RateLimitPolicy policy) {
+        this.rateLimitEngine = rateLimitEngine;
+        this.policy = policy;
+        this.limit = Integer.toString(policy.getLimit());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long result = rateLimitEngine.tryConsume(ClientIpUtil.resolve(request), policy);
+
+        response.setHeader("RateLimit-Policy", policy.getHeaderValue());
+        response.setHeader("RateLimit-Limit", limit);
+        if (result >= 0) {
+            response.setHeader("RateLimit-Remaining", decimal(result));
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String retryAfter = decimal(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(-result + 999_999_999L)));
+        response.setHeader("RateLimit-Remaining", DECIMALS[0]);
+        response.setHeader("RateLimit-Reset", retryAfter);
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    private static String decimal(long value) {
+        return value < DECIMALS.length ? DECIMALS[(int) value] : Long.toString(value);
+    }
+}
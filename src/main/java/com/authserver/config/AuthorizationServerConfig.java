@@ -5,6 +5,7 @@ import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
@@ -30,11 +31,16 @@ import java.security.KeyPairGenerator;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Configuration
 public class AuthorizationServerConfig {
 
+    // Registered clients holding this scope are admins on the admin endpoints (see SecurityConfig)
+    public static final String ADMIN_SCOPE = "admin";
+
     @Bean
     @Order(1)
     public SecurityFilterChain authorizationServerSecurityFilterChain(HttpSecurity http) throws Exception {
@@ -52,7 +58,8 @@ public class AuthorizationServerConfig {
     }
 
     @Bean
-    public RegisteredClientRepository registeredClientRepository() {
+    public RegisteredClientRepository registeredClientRepository(@Value("${security.admin-client.id:admin-client}") String adminClientId,
+                                                                 @Value("${security.admin-client.secret:}") String adminClientSecret) {
         RegisteredClient defaultClient = RegisteredClient.withId(UUID.randomUUID().toString())
             .clientId("default-client")
             .clientSecret("{noop}secret")
@@ -100,7 +107,20 @@ public class AuthorizationServerConfig {
                 .build())
             .build();
 
-        return new InMemoryRegisteredClientRepository(defaultClient, publicClient);
+        List<RegisteredClient> clients = new ArrayList<>(List.of(defaultClient, publicClient));
+
+        // Only registered when a secret is configured, so there is no admin credential by default
+        if (!adminClientSecret.isBlank()) {
+            clients.add(RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId(adminClientId)
+                .clientSecret(adminClientSecret)
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scope(ADMIN_SCOPE)
+                .build());
+        }
+
+        return new InMemoryRegisteredClientRepository(clients);
     }
 
     @Bean
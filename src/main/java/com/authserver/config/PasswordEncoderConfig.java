@@ -0,0 +1,112 @@
+package com.authserver.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Password encoder with {id} prefixes so the algorithm and its cost can change without a reset:
+ * new hashes use the configured algorithm, existing ones keep matching, and anything below the
+ * current policy is reported by {@code upgradeEncoding} and rehashed on the next successful login.
+ * The cost is calibrated at startup so one hash takes roughly password-hashing.target-millis on
+ * this hardware, within the configured bounds. Unprefixed hashes written before the prefixes were
+ * introduced are plain BCrypt.
+ */
+@Slf4j
+@Configuration
+public class PasswordEncoderConfig {
+
+    private static final String BCRYPT = "bcrypt";
+    private static final String ARGON2 = "argon2";
+    private static final String PROBE_PASSWORD = "calibration-Probe#1";
+    private static final int PROBE_RUNS = 3;
+
+    @Value("${password-hashing.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${password-hashing.target-millis:250}")
+    private long targetMillis;
+
+    @Value("${password-hashing.bcrypt.min-cost:10}")
+    private int bcryptMinCost;
+
+    @Value("${password-hashing.bcrypt.max-cost:16}")
+    private int bcryptMaxCost;
+
+    @Value("${password-hashing.argon2.memory-kib:19456}")
+    private int argon2MemoryKib;
+
+    @Value("${password-hashing.argon2.min-iterations:2}")
+    private int argon2MinIterations;
+
+    @Value("${password-hashing.argon2.max-iterations:10}")
+    private int argon2MaxIterations;
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        String idForEncode = algorithm.toLowerCase();
+        if (!idForEncode.equals(BCRYPT) && !idForEncode.equals(ARGON2)) {
+            throw new IllegalStateException("Unsupported password-hashing.algorithm: " + algorithm);
+        }
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, idForEncode.equals(BCRYPT) ? calibratedBCrypt() : new BCryptPasswordEncoder(bcryptMinCost));
+        encoders.put(ARGON2, idForEncode.equals(ARGON2) ? calibratedArgon2() : argon2(argon2MinIterations));
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
+    }
+
+    private PasswordEncoder calibratedBCrypt() {
+        long probeMillis = measure(new BCryptPasswordEncoder(bcryptMinCost));
+        // Each cost step doubles the work
+        int steps = (int) Math.floor(Math.log((double) targetMillis / Math.max(probeMillis, 1)) / Math.log(2));
+        int cost = clamp(bcryptMinCost + steps, bcryptMinCost, bcryptMaxCost);
+
+        log.info("Password hashing: bcrypt cost {} (cost {} took {} ms, target {} ms)",
+            cost, bcryptMinCost, probeMillis, targetMillis);
+        return new BCryptPasswordEncoder(cost);
+    }
+
+    private PasswordEncoder calibratedArgon2() {
+        long probeMillis = measure(argon2(argon2MinIterations));
+        // Work is linear in the iteration count at fixed memory
+        int iterations = (int) (argon2MinIterations * targetMillis / Math.max(probeMillis, 1));
+        iterations = clamp(iterations, argon2MinIterations, argon2MaxIterations);
+
+        log.info("Password hashing: argon2id {} KiB, {} iterations ({} iterations took {} ms, target {} ms)",
+            argon2MemoryKib, iterations, argon2MinIterations, probeMillis, targetMillis);
+        return argon2(iterations);
+    }
+
+    private Argon2PasswordEncoder argon2(int iterations) {
+        return new Argon2PasswordEncoder(16, 32, 1, argon2MemoryKib, iterations);
+    }
+
+    private static long measure(PasswordEncoder encoder) {
+        encoder.encode(PROBE_PASSWORD);
+
+        long[] samples = new long[PROBE_RUNS];
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long start = System.nanoTime();
+            encoder.encode(PROBE_PASSWORD);
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[PROBE_RUNS / 2];
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
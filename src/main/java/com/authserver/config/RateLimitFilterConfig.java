@@ -0,0 +1,34 @@
+package com.authserver.config;
+
+import com.authserver.service.RateLimitEngine;
+import com.authserver.service.RateLimitPolicyRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RateLimitFilterConfig {
+
+    @Value("${rate-limit.filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.filter.policy:api-request}")
+    private String policyName;
+
+    @Value("${rate-limit.filter.url-patterns:/api/*,/oauth2/token}")
+    private String[] urlPatterns;
+
+    // Ordered ahead of springSecurityFilterChain, which hosts both the authorization server and API chains
+    @Bean
+    public FilterRegistrationBean<ApiRateLimitFilter> apiRateLimitFilter(RateLimitEngine rateLimitEngine,
+                                                                         RateLimitPolicyRegistry policyRegistry) {
+        FilterRegistrationBean<ApiRateLimitFilter> registration =
+            new FilterRegistrationBean<>(new ApiRateLimitFilter(rateLimitEngine, policyRegistry.policy(policyName)));
+        registration.addUrlPatterns(urlPatterns);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
@@ -0,0 +1,25 @@
+package com.authserver.config;
+
+import com.authserver.service.RateLimitPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    @Data
+    public static class Policy {
+        private RateLimitPolicy.Algorithm algorithm = RateLimitPolicy.Algorithm.SLIDING_WINDOW;
+        private int limit;
+        private Duration window;
+    }
+}
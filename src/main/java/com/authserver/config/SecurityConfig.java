@@ -3,11 +3,19 @@ package com.authserver.config;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -21,6 +29,60 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    // RFC 7662: only registered clients may introspect, authenticating with HTTP Basic client_id:client_secret
+    @Bean
+    @Order(2)
+    public SecurityFilterChain introspectionSecurityFilterChain(HttpSecurity http,
+                                                                RegisteredClientRepository clients) throws Exception {
+        http
+            .securityMatcher("/api/auth/introspect")
+            .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .csrf(csrf -> csrf.disable())
+            .authorizeHttpRequests(auth -> auth.anyRequest().hasRole("CLIENT"))
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            .authenticationManager(clientAuthenticationManager(clients))
+            .httpBasic(Customizer.withDefaults());
+
+        return http.build();
+    }
+
+    // Admin endpoints are called by operator tooling, so they take the same stateless HTTP Basic client
+    // authentication; only a client registered with the admin scope (security.admin-client.*) gets ROLE_ADMIN
+    @Bean
+    @Order(3)
+    public SecurityFilterChain adminSecurityFilterChain(HttpSecurity http,
+                                                        RegisteredClientRepository clients) throws Exception {
+        http
+            .securityMatcher("/api/admin/users/import/**", "/api/admin/users/export/**", "/actuator/heavyhitters/**")
+            .csrf(csrf -> csrf.disable())
+            .authorizeHttpRequests(auth -> auth.anyRequest().hasRole("ADMIN"))
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            .authenticationManager(clientAuthenticationManager(clients))
+            .httpBasic(Customizer.withDefaults());
+
+        return http.build();
+    }
+
+    private static ProviderManager clientAuthenticationManager(RegisteredClientRepository clients) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        provider.setUserDetailsService(clientId -> {
+            RegisteredClient client = clients.findByClientId(clientId);
+            if (client == null || client.getClientSecret() == null
+                    || !client.getClientAuthenticationMethods().contains(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)) {
+                throw new UsernameNotFoundException("Unknown client: " + clientId);
+            }
+            String[] roles = client.getScopes().contains(AuthorizationServerConfig.ADMIN_SCOPE)
+                ? new String[] {"CLIENT", "ADMIN"}
+                : new String[] {"CLIENT"};
+            return User.withUsername(clientId).password(client.getClientSecret()).roles(roles).build();
+        });
+        return new ProviderManager(provider);
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -40,6 +102,7 @@ public class SecurityConfig {
                     "/api/auth/forgot-password",
                     "/api/auth/reset-password",
                     "/api/auth/refresh",
+                    "/api/auth/jwks",
                     "/oauth2/**",
                     "/.well-known/**",
                     "/actuator/health",
@@ -47,6 +110,7 @@ public class SecurityConfig {
                     "/error"
                 ).permitAll()
                 .requestMatchers("/api/auth/2fa/**").authenticated()
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .sessionManagement(session -> session
@@ -59,11 +123,6 @@ public class SecurityConfig {
         return http.build();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
-    }
-
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -1,14 +1,19 @@
 package com.authserver.controller;
 
 import com.authserver.dto.*;
+import com.authserver.service.TokenService;
 import com.authserver.service.UserService;
+import com.authserver.util.ClientIpUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/auth")
@@ -16,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final UserService userService;
+    private final TokenService tokenService;
 
     @PostMapping("/register")
     public ResponseEntity<ApiResponse<Void>> registerWithEmail(@Valid @RequestBody RegisterRequest request) {
@@ -28,11 +34,11 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<ApiResponse<TokenResponse>> login(
+    public CompletableFuture<ResponseEntity<ApiResponse<TokenResponse>>> login(
             @Valid @RequestBody LoginRequest request,
             HttpServletRequest httpRequest) {
         String clientIp = getClientIp(httpRequest);
-        return ResponseEntity.ok(userService.login(request, clientIp));
+        return userService.login(request, clientIp).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/refresh")
@@ -40,6 +46,12 @@ public class AuthController {
         return ResponseEntity.ok(userService.refreshToken(refreshToken));
     }
 
+    // Form-encoded body as in RFC 7662, so tokens stay out of URLs and access logs
+    @PostMapping(value = "/introspect", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<ApiResponse<TokenIntrospectionResponse>> introspect(@RequestParam String token) {
+        return ResponseEntity.ok(ApiResponse.success(tokenService.introspect(token)));
+    }
+
     @PostMapping("/verify-email")
     public ResponseEntity<ApiResponse<Void>> verifyEmail(@Valid @RequestBody VerifyEmailRequest request) {
         return ResponseEntity.ok(userService.verifyEmail(request.getToken()));
@@ -95,16 +107,6 @@ public class AuthController {
     }
 
     private String getClientIp(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-        
-        return request.getRemoteAddr();
+        return ClientIpUtil.resolve(request);
     }
 }
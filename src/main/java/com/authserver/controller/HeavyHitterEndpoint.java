@@ -0,0 +1,35 @@
+package com.authserver.controller;
+
+import com.authserver.dto.HeavyHitterEntry;
+import com.authserver.service.HeavyHitterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator view of the failed-login heavy hitters: GET /actuator/heavyhitters lists the top
+ * offenders per key space, DELETE /actuator/heavyhitters/{key} lifts a block early.
+ */
+@Component
+@Endpoint(id = "heavyhitters")
+@RequiredArgsConstructor
+public class HeavyHitterEndpoint {
+
+    private final HeavyHitterService heavyHitterService;
+
+    @ReadOperation
+    public Map<String, List<HeavyHitterEntry>> topOffenders() {
+        return heavyHitterService.topOffenders();
+    }
+
+    @DeleteOperation
+    public Map<String, Boolean> unblock(@Selector String key) {
+        return Map.of("unblocked", heavyHitterService.unblock(key));
+    }
+}
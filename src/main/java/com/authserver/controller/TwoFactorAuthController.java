@@ -2,8 +2,8 @@ package com.authserver.controller;
 
 import com.authserver.dto.ApiResponse;
 import com.authserver.dto.TwoFactorSetupResponse;
+import com.authserver.service.TokenService;
 import com.authserver.service.TwoFactorAuthService;
-import com.authserver.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -18,7 +18,7 @@ import java.util.UUID;
 public class TwoFactorAuthController {
 
     private final TwoFactorAuthService twoFactorAuthService;
-    private final JwtUtil jwtUtil;
+    private final TokenService tokenService;
 
     @PostMapping("/enable")
     public ResponseEntity<ApiResponse<TwoFactorSetupResponse>> enable(
@@ -56,7 +56,6 @@ public class TwoFactorAuthController {
 
     private UUID extractUserIdFromToken(String authHeader) {
         String token = authHeader.replace("Bearer ", "");
-        String userIdStr = jwtUtil.extractUserId(token);
-        return UUID.fromString(userIdStr);
+        return UUID.fromString(tokenService.resolve(token).getUserId());
     }
 }
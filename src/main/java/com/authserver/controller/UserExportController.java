@@ -0,0 +1,43 @@
+package com.authserver.controller;
+
+import com.authserver.service.UserExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Admin user export, streamed onto the response as the rows are read. Parameters are validated
+ * before the first byte, so bad requests still get a JSON error; a failure mid-stream cuts the
+ * response short. Disabled unless user-export.endpoint-enabled is set.
+ */
+@RestController
+@RequestMapping("/api/admin/users/export")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user-export.endpoint-enabled", havingValue = "true")
+public class UserExportController {
+
+    private final UserExportService userExportService;
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String updatedFrom,
+            @RequestParam(required = false) String updatedTo,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        UserExportService.ExportSpec spec = userExportService.prepare(format, fields, updatedFrom, updatedTo, gzip);
+
+        String extension = spec.getFormat() == UserExportService.Format.CSV ? "csv" : "ndjson";
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+            : spec.getFormat() == UserExportService.Format.CSV ? MediaType.parseMediaType("text/csv")
+            : MediaType.parseMediaType("application/x-ndjson");
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + extension + (gzip ? ".gz" : "") + "\"")
+            .body(out -> userExportService.export(spec, out));
+    }
+}
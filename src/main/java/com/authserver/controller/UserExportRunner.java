@@ -0,0 +1,80 @@
+package com.authserver.controller;
+
+import com.authserver.service.UserExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Command-line user export: with --user-export.file=users.ndjson.gz the application writes the
+ * export and exits, with status 0 on success. Format and compression follow the file name unless
+ * user-export.format is set; user-export.fields, user-export.updated-from and user-export.updated-to
+ * work as on the endpoint. The output goes to a temporary file that is moved into place when
+ * complete, so a failed run never leaves a truncated export under the requested name.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user-export.file")
+public class UserExportRunner implements ApplicationRunner {
+
+    private final UserExportService userExportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${user-export.file}")
+    private String file;
+
+    @Value("${user-export.format:}")
+    private String format;
+
+    @Value("${user-export.fields:}")
+    private String fields;
+
+    @Value("${user-export.updated-from:}")
+    private String updatedFrom;
+
+    @Value("${user-export.updated-to:}")
+    private String updatedTo;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Path path = Path.of(file).toAbsolutePath();
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        boolean gzip = file.endsWith(".gz");
+        String name = gzip ? file.substring(0, file.length() - 3) : file;
+        String exportFormat = !format.isBlank() ? format : name.endsWith(".csv") ? "csv" : "ndjson";
+
+        int exitCode = 0;
+        try {
+            UserExportService.ExportSpec spec = userExportService.prepare(exportFormat, fields, updatedFrom, updatedTo, gzip);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                userExportService.export(spec, out);
+            }
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Export written to {}", path);
+        } catch (Exception e) {
+            log.error("Export to {} failed", path, e);
+            exitCode = 1;
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException cleanupFailure) {
+                log.warn("Could not remove {}: {}", partial, cleanupFailure.getMessage());
+            }
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
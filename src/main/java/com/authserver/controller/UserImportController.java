@@ -0,0 +1,44 @@
+package com.authserver.controller;
+
+import com.authserver.dto.ApiResponse;
+import com.authserver.dto.UserImportResult;
+import com.authserver.exception.ResourceNotFoundException;
+import com.authserver.service.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Admin bulk import. The request body (CSV or NDJSON) is streamed straight into the import and
+ * never buffered; the call returns when the import finishes. Disabled unless
+ * user-import.endpoint-enabled is set.
+ */
+@RestController
+@RequestMapping("/api/admin/users/import")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user-import.endpoint-enabled", havingValue = "true")
+public class UserImportController {
+
+    private final UserImportService userImportService;
+
+    @PostMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<UserImportResult>> importUsers(
+            @PathVariable String jobId,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) throws IOException {
+        String inputFormat = format != null ? format : request.getContentType();
+        UserImportResult result = userImportService.importUsers(jobId, request.getInputStream(), inputFormat);
+        return ResponseEntity.ok(ApiResponse.success("Import completed", result));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<UserImportResult>> progress(@PathVariable String jobId) {
+        UserImportResult result = userImportService.findProgress(jobId)
+            .orElseThrow(() -> new ResourceNotFoundException("No import with job id " + jobId));
+        return ResponseEntity.ok(ApiResponse.success(result));
+    }
+}
@@ -0,0 +1,58 @@
+package com.authserver.controller;
+
+import com.authserver.dto.UserImportResult;
+import com.authserver.service.UserImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line bulk import: with --user-import.file=users.csv the application imports the file and
+ * exits, with status 0 on success. The job id defaults to the file name, so rerunning the same
+ * command resumes an interrupted import. The web stack still starts (the security configuration
+ * needs it); --server.port=0 keeps it off the port of a running instance.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user-import.file")
+public class UserImportRunner implements ApplicationRunner {
+
+    private final UserImportService userImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${user-import.file}")
+    private String file;
+
+    @Value("${user-import.job-id:}")
+    private String jobId;
+
+    @Value("${user-import.format:}")
+    private String format;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Path path = Path.of(file);
+        String id = jobId.isBlank() ? path.getFileName().toString() : jobId;
+        int exitCode = 0;
+        try (InputStream input = Files.newInputStream(path)) {
+            UserImportResult result = userImportService.importUsers(id, input, format.isBlank() ? file : format);
+            log.info("Import {} finished: {}", id, result);
+        } catch (Exception e) {
+            log.error("Import {} from {} failed", id, file, e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
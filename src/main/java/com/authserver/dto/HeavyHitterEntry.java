@@ -0,0 +1,19 @@
+package com.authserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeavyHitterEntry {
+
+    private String key;
+    private long estimatedFailures; // Decayed Count-Min estimate, may overcount
+    private Instant blockedUntil;
+}
@@ -0,0 +1,19 @@
+package com.authserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionResponse {
+
+    private boolean active;
+    private String sub;
+    private String userId;
+    private String tokenType;
+    private Long exp;
+}
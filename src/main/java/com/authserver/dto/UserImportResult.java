@@ -0,0 +1,24 @@
+package com.authserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportResult {
+
+    private String jobId;
+    private String status; // RUNNING, COMPLETED or FAILED
+    private long recordsRead;
+    private long imported;
+    private long skipped; // Email or phone number already registered
+    private long invalid;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+}
@@ -1,10 +1,19 @@
 package com.authserver.exception;
 
+import lombok.Getter;
 import org.springframework.http.HttpStatus;
 
+@Getter
 public class RateLimitExceededException extends CustomException {
+
+    private final Long retryAfterSeconds;
     
     public RateLimitExceededException(String message) {
+        this(message, null);
+    }
+
+    public RateLimitExceededException(String message, Long retryAfterSeconds) {
         super(message, HttpStatus.TOO_MANY_REQUESTS);
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 }
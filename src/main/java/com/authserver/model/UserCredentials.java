@@ -0,0 +1,45 @@
+package com.authserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Read-only snapshot of the user fields login and 2FA checks need. Safe to share between threads
+ * and to keep in the near cache; writes always go through the User entity or targeted updates.
+ */
+@Getter
+@AllArgsConstructor
+public class UserCredentials {
+
+    private final UUID id;
+    private final String email;
+    private final String phoneNumber;
+    private final String passwordHash;
+    private final boolean emailVerified;
+    private final boolean phoneVerified;
+    private final boolean twoFactorEnabled;
+    private final String twoFactorSecret;
+    private final boolean accountLocked;
+    private final int failedLoginAttempts;
+
+    public static UserCredentials from(User user) {
+        return new UserCredentials(
+            user.getId(),
+            user.getEmail(),
+            user.getPhoneNumber(),
+            user.getPasswordHash(),
+            user.isEmailVerified(),
+            user.isPhoneVerified(),
+            user.isTwoFactorEnabled(),
+            user.getTwoFactorSecret(),
+            user.isAccountLocked(),
+            user.getFailedLoginAttempts() == null ? 0 : user.getFailedLoginAttempts()
+        );
+    }
+
+    public String getIdentifier() {
+        return email != null ? email : phoneNumber;
+    }
+}
@@ -2,6 +2,8 @@ package com.authserver.repository;
 
 import com.authserver.model.RateLimitTracking;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -11,11 +13,22 @@ import java.util.UUID;
 @Repository
 public interface RateLimitTrackingRepository extends JpaRepository<RateLimitTracking, UUID> {
 
-    Optional<RateLimitTracking> findByIdentifierAndActionTypeAndWindowStartAfter(
-        String identifier, 
-        String actionType, 
-        LocalDateTime windowStart
-    );
+    // Counts one attempt in the window and returns the new total, atomically in one statement. Only
+    // counts while the window holds fewer than maxCount; otherwise writes nothing and returns empty,
+    // so rejected attempts never extend a block
+    @Query(value = "INSERT INTO rate_limit_tracking (identifier, action_type, attempt_count, window_start) " +
+        "SELECT :identifier, :actionType, 1, :windowStart WHERE :maxCount > 0 " +
+        "ON CONFLICT (identifier, action_type, window_start) " +
+        "DO UPDATE SET attempt_count = rate_limit_tracking.attempt_count + 1, updated_at = CURRENT_TIMESTAMP " +
+        "WHERE rate_limit_tracking.attempt_count < :maxCount " +
+        "RETURNING attempt_count", nativeQuery = true)
+    Optional<Integer> incrementAttemptCount(String identifier, String actionType, LocalDateTime windowStart, int maxCount);
 
-    void deleteByWindowStartBefore(LocalDateTime date);
+    @Query("select r.attemptCount from RateLimitTracking r " +
+        "where r.identifier = :identifier and r.actionType = :actionType and r.windowStart = :windowStart")
+    Optional<Integer> findAttemptCount(String identifier, String actionType, LocalDateTime windowStart);
+
+    @Modifying
+    @Query("delete from RateLimitTracking r where r.identifier = :identifier and r.actionType = :actionType")
+    void deleteByIdentifierAndActionType(String identifier, String actionType);
 }
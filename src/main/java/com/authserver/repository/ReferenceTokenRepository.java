@@ -0,0 +1,21 @@
+package com.authserver.repository;
+
+import com.authserver.model.ReferenceToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ReferenceTokenRepository extends JpaRepository<ReferenceToken, String> {
+
+    // Deletes at most limit expired rows in one short transaction; returns how many went
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM reference_tokens WHERE ctid = ANY(ARRAY(" +
+        "SELECT ctid FROM reference_tokens WHERE expires_at < :now LIMIT :limit))", nativeQuery = true)
+    int deleteExpiredChunk(LocalDateTime now, int limit);
+}
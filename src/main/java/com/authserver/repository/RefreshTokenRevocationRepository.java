@@ -0,0 +1,28 @@
+package com.authserver.repository;
+
+import com.authserver.model.RefreshTokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RefreshTokenRevocationRepository extends JpaRepository<RefreshTokenRevocation, String> {
+
+    @Query("select r.id from RefreshTokenRevocation r where r.expiresAt > :now")
+    List<String> findActiveIds(LocalDateTime now);
+
+    @Query("select r.id from RefreshTokenRevocation r where r.createdAt > :since and r.expiresAt > :now")
+    List<String> findActiveIdsCreatedAfter(LocalDateTime since, LocalDateTime now);
+
+    // Deletes at most limit expired rows in one short transaction; returns how many went
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM refresh_token_revocations WHERE ctid = ANY(ARRAY(" +
+        "SELECT ctid FROM refresh_token_revocations WHERE expires_at < :now LIMIT :limit))", nativeQuery = true)
+    int deleteExpiredChunk(LocalDateTime now, int limit);
+}
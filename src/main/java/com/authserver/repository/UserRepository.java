@@ -1,9 +1,15 @@
 package com.authserver.repository;
 
 import com.authserver.model.User;
+import com.authserver.model.UserCredentials;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,6 +20,13 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
     Optional<User> findByPhoneNumber(String phoneNumber);
 
+    // Resolves an email or phone number in one round trip, reading only the columns login needs
+    @Query("select new com.authserver.model.UserCredentials(u.id, u.email, u.phoneNumber, u.passwordHash, " +
+        "coalesce(u.emailVerified, false), coalesce(u.phoneVerified, false), coalesce(u.twoFactorEnabled, false), " +
+        "u.twoFactorSecret, coalesce(u.accountLocked, false), coalesce(u.failedLoginAttempts, 0)) " +
+        "from User u where u.email = :identifier or u.phoneNumber = :identifier")
+    List<UserCredentials> findCredentialsByIdentifier(String identifier);
+
     Optional<User> findByGoogleId(String googleId);
 
     boolean existsByEmail(String email);
@@ -21,4 +34,24 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     boolean existsByPhoneNumber(String phoneNumber);
 
     boolean existsByGoogleId(String googleId);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.passwordHash = :newHash, u.updatedAt = :now where u.id = :id and u.passwordHash = :currentHash")
+    int updatePasswordHash(UUID id, String currentHash, String newHash, LocalDateTime now);
+
+    // Counts a failure and locks at maxAttempts in one statement, so concurrent failures all count
+    @Transactional
+    @Query(value = "UPDATE users SET failed_login_attempts = COALESCE(failed_login_attempts, 0) + 1, " +
+        "account_locked = COALESCE(account_locked, false) OR COALESCE(failed_login_attempts, 0) + 1 >= :maxAttempts, " +
+        "updated_at = CURRENT_TIMESTAMP " +
+        "WHERE id = :id RETURNING failed_login_attempts", nativeQuery = true)
+    int incrementFailedLoginAttempts(UUID id, int maxAttempts);
+
+    // Writes nothing when the counter is already zero; bumps updated_at like every other write to users
+    @Modifying
+    @Transactional
+    @Query("update User u set u.failedLoginAttempts = 0, u.updatedAt = CURRENT_TIMESTAMP " +
+        "where u.id = :id and u.failedLoginAttempts <> 0")
+    int resetFailedLoginAttempts(UUID id);
 }
@@ -3,6 +3,8 @@ package com.authserver.repository;
 import com.authserver.model.User;
 import com.authserver.model.VerificationToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -17,7 +19,13 @@ public interface VerificationTokenRepository extends JpaRepository<VerificationT
 
     List<VerificationToken> findByUserAndType(User user, VerificationToken.TokenType type);
 
-    void deleteByExpiresAtBefore(LocalDateTime date);
+    // OTP codes are short and only unique per user
+    Optional<VerificationToken> findByTokenAndUserAndType(String token, User user, VerificationToken.TokenType type);
 
     void deleteByUserAndType(User user, VerificationToken.TokenType type);
+
+    // Returns 0 when another request already consumed the token
+    @Modifying
+    @Query("update VerificationToken t set t.used = true where t.id = :id and coalesce(t.used, false) = false")
+    int markUsed(UUID id);
 }
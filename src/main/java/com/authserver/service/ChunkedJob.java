@@ -0,0 +1,12 @@
+package com.authserver.service;
+
+/**
+ * A maintenance job that works through its backlog in bounded chunks, each in its own transaction.
+ * The scheduler keeps calling it until a chunk comes back short.
+ */
+@FunctionalInterface
+public interface ChunkedJob {
+
+    // Processes at most chunkSize rows and returns how many it processed
+    int runChunk(int chunkSize);
+}
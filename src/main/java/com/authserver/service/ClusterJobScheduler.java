@@ -0,0 +1,190 @@
+package com.authserver.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs database maintenance jobs on one instance per cluster. Every instance fires the same
+ * schedule; each waits a random jitter and then tries a Postgres advisory lock named after the job.
+ * Only the holder runs the job, in bounded chunks with a short pause in between and a cap on total
+ * run time, so adding replicas does not multiply the load. The lock alone only serialises, so a
+ * replica that gets it after the winner has finished checks cluster_job_runs and skips the slot
+ * when a run already started in it. The outcome of each run is recorded in
+ * cluster_job_runs and as cluster.job.duration. Jobs run on a small pool of their own and never
+ * hold up the shared @Scheduled thread.
+ */
+@Slf4j
+@Service
+public class ClusterJobScheduler {
+
+    // First key of the two-int advisory lock form; the second is the job name's hash
+    private static final int LOCK_NAMESPACE = 0x6a6f6273; // "jobs"
+    private static final String RECORD_SQL =
+        "INSERT INTO cluster_job_runs (job_name, runner, status, started_at, finished_at, duration_ms, processed, chunks, error) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (job_name) DO UPDATE SET runner = EXCLUDED.runner, status = EXCLUDED.status, " +
+        "started_at = EXCLUDED.started_at, finished_at = EXCLUDED.finished_at, duration_ms = EXCLUDED.duration_ms, " +
+        "processed = EXCLUDED.processed, chunks = EXCLUDED.chunks, error = EXCLUDED.error";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolTaskScheduler executor;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final String runner = ManagementFactory.getRuntimeMXBean().getName();
+    private final int chunkSize;
+    private final long maxJitterMillis;
+    private final long chunkPauseMillis;
+    private final long maxRunMillis;
+
+    public ClusterJobScheduler(JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${cluster-jobs.chunk-size:1000}") int chunkSize,
+                               @Value("${cluster-jobs.max-jitter:30000}") long maxJitterMillis,
+                               @Value("${cluster-jobs.chunk-pause:50}") long chunkPauseMillis,
+                               @Value("${cluster-jobs.max-run-time:300000}") long maxRunMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+        this.maxJitterMillis = maxJitterMillis;
+        this.chunkPauseMillis = chunkPauseMillis;
+        this.maxRunMillis = maxRunMillis;
+
+        this.executor = new ThreadPoolTaskScheduler();
+        this.executor.setPoolSize(2);
+        this.executor.setThreadNamePrefix("cluster-job-");
+        this.executor.setWaitForTasksToCompleteOnShutdown(false);
+        this.executor.initialize();
+    }
+
+    // Schedules one jittered attempt at the job and returns straight away. period is the job's
+    // schedule interval: a run that started less than half a period before this firing counts as
+    // this slot's run, which tolerates clock skew and jitter between replicas
+    public void submit(String jobName, Duration period, ChunkedJob job) {
+        if (!running.add(jobName)) {
+            log.debug("Job {} still running on this instance, skipping", jobName);
+            return;
+        }
+        Instant slotStart = Instant.now().minus(period.dividedBy(2));
+        long jitter = maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(maxJitterMillis) : 0;
+        executor.schedule(() -> {
+            try {
+                runIfLeader(jobName, slotStart, job);
+            } finally {
+                running.remove(jobName);
+            }
+        }, Instant.now().plusMillis(jitter));
+    }
+
+    private void runIfLeader(String jobName, Instant slotStart, ChunkedJob job) {
+        try {
+            // The lock belongs to the session, so it is taken and released on one pinned connection;
+            // the job's own chunks use other pooled connections
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                int lockKey = jobName.hashCode();
+                if (!Boolean.TRUE.equals(session.queryForObject(
+                        "SELECT pg_try_advisory_lock(?, ?)", Boolean.class, LOCK_NAMESPACE, lockKey))) {
+                    log.debug("Job {} is running on another instance, skipping", jobName);
+                    record(jobName, "skipped", 0);
+                    return null;
+                }
+                try {
+                    if (alreadyRanInSlot(session, jobName, slotStart)) {
+                        log.debug("Job {} already ran on another instance in this slot, skipping", jobName);
+                        record(jobName, "skipped", 0);
+                    } else {
+                        runChunks(jobName, job);
+                    }
+                } finally {
+                    session.queryForObject("SELECT pg_advisory_unlock(?, ?)", Boolean.class, LOCK_NAMESPACE, lockKey);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.error("Could not coordinate job {}", jobName, e);
+        }
+    }
+
+    // Read under the lock, after any earlier holder has recorded its run
+    private boolean alreadyRanInSlot(JdbcTemplate session, String jobName, Instant slotStart) {
+        List<Timestamp> startedAt = session.queryForList(
+            "SELECT started_at FROM cluster_job_runs WHERE job_name = ?", Timestamp.class, jobName);
+        return !startedAt.isEmpty() && startedAt.get(0).toInstant().isAfter(slotStart);
+    }
+
+    private void runChunks(String jobName, ChunkedJob job) {
+        long startNanos = System.nanoTime();
+        Timestamp startedAt = new Timestamp(System.currentTimeMillis());
+        long deadline = startNanos + Duration.ofMillis(maxRunMillis).toNanos();
+        long processed = 0;
+        int chunks = 0;
+        String status = "COMPLETED";
+        String error = null;
+
+        try {
+            while (true) {
+                int done = job.runChunk(chunkSize);
+                processed += done;
+                chunks++;
+                if (done < chunkSize) {
+                    break;
+                }
+                if (System.nanoTime() > deadline) {
+                    status = "PARTIAL";
+                    break;
+                }
+                Thread.sleep(chunkPauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = "PARTIAL";
+        } catch (RuntimeException e) {
+            status = "FAILED";
+            error = e.getMessage();
+            log.error("Job {} failed after {} chunks", jobName, chunks, e);
+        }
+
+        long durationNanos = System.nanoTime() - startNanos;
+        record(jobName, status.toLowerCase(), durationNanos);
+        try {
+            jdbcTemplate.update(RECORD_SQL, jobName, runner, status, startedAt,
+                new Timestamp(System.currentTimeMillis()), Duration.ofNanos(durationNanos).toMillis(), processed, chunks, error);
+        } catch (DataAccessException e) {
+            log.warn("Could not record run of job {}: {}", jobName, e.getMessage());
+        }
+        log.info("Job {} {}: {} rows in {} chunks, {} ms", jobName, status.toLowerCase(), processed, chunks,
+            Duration.ofNanos(durationNanos).toMillis());
+    }
+
+    private void record(String jobName, String outcome, long durationNanos) {
+        Timer.builder("cluster.job.duration")
+            .description("Maintenance job runs; outcome skipped means another instance held the lock or already ran the slot")
+            .tag("job", jobName)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(Duration.ofNanos(durationNanos));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,177 @@
+package com.authserver.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster-wide token buckets. The authoritative bucket is a row in rate_limit_buckets, refilled
+ * continuously and updated with a version compare-and-swap. Each node takes tokens from it in small
+ * leases and serves checks from the lease until it runs out or expires, so most checks stay local.
+ * Tokens are deducted centrally before they are handed out, so the cluster never admits more than
+ * the limit; the error is under-admission of at most one partly used lease per node. A node that is
+ * denied remembers when the next token is due and answers locally until then. Every policy is
+ * enforced as a token bucket here: limit tokens refilled continuously over the window, which has no
+ * edge bursts either.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate-limit.engine", havingValue = "distributed")
+public class DistributedRateLimitEngine implements RateLimitEngine {
+
+    private static final String SELECT_SQL =
+        "SELECT tokens, refilled_at_ms, version FROM rate_limit_buckets WHERE bucket_key = ?";
+    private static final String INSERT_SQL =
+        "INSERT INTO rate_limit_buckets (bucket_key, tokens, refilled_at_ms, version, expires_at) " +
+        "VALUES (?, ?, ?, 0, ?) ON CONFLICT (bucket_key) DO NOTHING";
+    private static final String UPDATE_SQL =
+        "UPDATE rate_limit_buckets SET tokens = ?, refilled_at_ms = ?, version = version + 1, expires_at = ? " +
+        "WHERE bucket_key = ? AND version = ?";
+    private static final String DELETE_SQL = "DELETE FROM rate_limit_buckets WHERE bucket_key = ?";
+    private static final String CLEANUP_SQL = "DELETE FROM rate_limit_buckets WHERE ctid = ANY(ARRAY(" +
+        "SELECT ctid FROM rate_limit_buckets WHERE expires_at < ? LIMIT ?))";
+    private static final int MAX_CAS_ATTEMPTS = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterJobScheduler clusterJobs;
+    private final int maxLeaseSize;
+    private final double leaseFraction;
+    private final long leaseTtlNanos;
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public DistributedRateLimitEngine(JdbcTemplate jdbcTemplate,
+                                      ClusterJobScheduler clusterJobs,
+                                      @Value("${rate-limit.distributed.lease-size:10}") int maxLeaseSize,
+                                      @Value("${rate-limit.distributed.lease-fraction:0.1}") double leaseFraction,
+                                      @Value("${rate-limit.distributed.lease-ttl:1000}") long leaseTtlMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterJobs = clusterJobs;
+        this.maxLeaseSize = maxLeaseSize;
+        this.leaseFraction = leaseFraction;
+        this.leaseTtlNanos = Duration.ofMillis(leaseTtlMillis).toNanos();
+    }
+
+    @Override
+    public long tryConsume(String identifier, RateLimitPolicy policy) {
+        String key = key(identifier, policy.getName());
+        int maxAttempts = policy.getLimit();
+        Lease lease = leases.computeIfAbsent(key, k -> new Lease());
+
+        // Concurrent misses for the same key on this node wait for one lease instead of all hitting the row
+        synchronized (lease) {
+            long now = System.nanoTime();
+            lease.lastAccessNanos = now;
+            if (now < lease.deniedUntilNanos) {
+                return RateLimitEngine.rejected(lease.deniedUntilNanos - now);
+            }
+            if (lease.remaining > 0 && now < lease.expiresAtNanos) {
+                lease.remaining--;
+                return RateLimitEngine.allowed(lease.remaining + lease.sharedRemaining);
+            }
+
+            int leaseSize = (int) Math.max(1, Math.min(maxLeaseSize, Math.floor(maxAttempts * leaseFraction)));
+            long granted = acquire(key, maxAttempts, policy.getWindow(), leaseSize, lease);
+            if (granted == 0) {
+                lease.remaining = 0;
+                return RateLimitEngine.rejected(lease.deniedUntilNanos - now);
+            }
+            lease.remaining = granted - 1;
+            lease.expiresAtNanos = now + leaseTtlNanos;
+            return RateLimitEngine.allowed(lease.remaining + lease.sharedRemaining);
+        }
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitPolicy policy) {
+        String key = key(identifier, policy.getName());
+        leases.remove(key);
+        jdbcTemplate.update(DELETE_SQL, key);
+    }
+
+    // Takes up to leaseSize tokens from the shared row; on denial records when the next token is due
+    private long acquire(String key, int capacity, Duration window, int leaseSize, Lease lease) {
+        double ratePerMilli = capacity / (double) window.toMillis();
+
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            long nowMillis = System.currentTimeMillis();
+            Timestamp expiresAt = new Timestamp(nowMillis + window.toMillis());
+            List<BucketRow> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, i) -> new BucketRow(rs.getDouble(1), rs.getLong(2), rs.getLong(3)), key);
+
+            if (rows.isEmpty()) {
+                long granted = Math.min(leaseSize, capacity);
+                if (jdbcTemplate.update(INSERT_SQL, key, (double) (capacity - granted), nowMillis, expiresAt) == 1) {
+                    lease.sharedRemaining = capacity - granted;
+                    return granted;
+                }
+                continue;
+            }
+
+            BucketRow row = rows.get(0);
+            // Clocks differ between nodes; never move refilled_at backwards
+            long refilledAt = Math.max(nowMillis, row.refilledAtMillis);
+            double tokens = Math.min(capacity, row.tokens + (refilledAt - row.refilledAtMillis) * ratePerMilli);
+            long granted = Math.min(leaseSize, (long) Math.floor(tokens));
+
+            if (granted == 0) {
+                long waitMillis = (long) Math.ceil((1 - tokens) / ratePerMilli);
+                lease.deniedUntilNanos = System.nanoTime() + Duration.ofMillis(Math.max(waitMillis, 1)).toNanos();
+                return 0;
+            }
+
+            if (jdbcTemplate.update(UPDATE_SQL, tokens - granted, refilledAt, expiresAt, key, row.version) == 1) {
+                lease.sharedRemaining = (long) Math.floor(tokens - granted);
+                return granted;
+            }
+        }
+
+        log.warn("Rate limit bucket {} under heavy contention, denying", key);
+        lease.deniedUntilNanos = System.nanoTime() + Duration.ofMillis(100).toNanos();
+        return 0;
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.local.sweep-interval:60000}")
+    public void evictIdleLeases() {
+        long idleNanos = Math.max(leaseTtlNanos, Duration.ofMinutes(1).toNanos());
+        long now = System.nanoTime();
+        leases.entrySet().removeIf(e -> {
+            Lease lease = e.getValue();
+            return now - lease.lastAccessNanos > idleNanos && now > lease.deniedUntilNanos;
+        });
+    }
+
+    @Scheduled(cron = "0 5 * * * *") // Every hour
+    public void cleanupExpiredBuckets() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        clusterJobs.submit("rate-limit-bucket-cleanup", Duration.ofHours(1), chunkSize -> jdbcTemplate.update(CLEANUP_SQL, now, chunkSize));
+    }
+
+    private static String key(String identifier, String actionType) {
+        return actionType + ':' + identifier;
+    }
+
+    @RequiredArgsConstructor
+    private static final class BucketRow {
+        private final double tokens;
+        private final long refilledAtMillis;
+        private final long version;
+    }
+
+    private static final class Lease {
+        private long remaining;
+        private long expiresAtNanos;
+        private long deniedUntilNanos;
+        // Tokens left in the shared bucket when this lease was taken; RateLimit-Remaining is approximate
+        private long sharedRemaining;
+        private volatile long lastAccessNanos;
+    }
+}
@@ -0,0 +1,203 @@
+package com.authserver.service;
+
+import com.authserver.dto.HeavyHitterEntry;
+import com.authserver.exception.RateLimitExceededException;
+import com.authserver.util.CountMinSketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed-memory heavy-hitter detection over failed logins, keyed separately by client IP and by login
+ * identifier. Each key space has a Count-Min sketch for frequency estimates and a small top-K table
+ * of the worst offenders; counters are halved every decay interval so estimates track recent
+ * traffic. A key whose estimate reaches the block threshold goes on an in-memory block list that
+ * login consults before any rate-limit, database or hashing work. Memory stays bounded no matter
+ * how many distinct IPs an attack spreads over; only blocked keys and the top-K are stored exactly.
+ */
+@Slf4j
+@Service
+public class HeavyHitterService {
+
+    private final boolean enabled;
+    private final long blockThreshold;
+    private final long blockDurationMillis;
+    private final Tracker clientIps;
+    private final Tracker identifiers;
+
+    public HeavyHitterService(MeterRegistry meterRegistry,
+                              @Value("${heavy-hitters.enabled:true}") boolean enabled,
+                              @Value("${heavy-hitters.sketch-width:65536}") int sketchWidth,
+                              @Value("${heavy-hitters.sketch-depth:4}") int sketchDepth,
+                              @Value("${heavy-hitters.top-k:100}") int topK,
+                              @Value("${heavy-hitters.block-threshold:100}") long blockThreshold,
+                              @Value("${heavy-hitters.block-duration:900000}") long blockDurationMillis) {
+        this.enabled = enabled;
+        this.blockThreshold = blockThreshold;
+        this.blockDurationMillis = blockDurationMillis;
+        this.clientIps = new Tracker("client-ip", sketchWidth, sketchDepth, topK, meterRegistry);
+        this.identifiers = new Tracker("identifier", sketchWidth, sketchDepth, topK, meterRegistry);
+
+        if (enabled) {
+            log.info("Heavy-hitter detection: {} KiB per key space, top {}, block at {} failures",
+                clientIps.sketch.sizeInBytes() / 1024, topK, blockThreshold);
+        }
+    }
+
+    public void checkBlocked(String clientIp, String identifier) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long blockedUntil = Math.max(clientIps.blockedUntil(clientIp, now), identifiers.blockedUntil(identifier, now));
+        if (blockedUntil > now) {
+            throw new RateLimitExceededException("Too many failed attempts. Please try again later.",
+                Math.max(1, (blockedUntil - now + 999) / 1000));
+        }
+    }
+
+    public void recordFailedLogin(String clientIp, String identifier) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        clientIps.record(clientIp, now);
+        identifiers.record(identifier, now);
+    }
+
+    public Map<String, List<HeavyHitterEntry>> topOffenders() {
+        Map<String, List<HeavyHitterEntry>> result = new LinkedHashMap<>();
+        result.put("clientIps", clientIps.offenders());
+        result.put("identifiers", identifiers.offenders());
+        return result;
+    }
+
+    public boolean unblock(String key) {
+        boolean removed = clientIps.blocked.remove(key) != null;
+        return identifiers.blocked.remove(key) != null || removed;
+    }
+
+    @Scheduled(fixedDelayString = "${heavy-hitters.decay-interval:60000}")
+    public void decay() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        clientIps.decay(now);
+        identifiers.decay(now);
+    }
+
+    private final class Tracker {
+        private final String type;
+        private final CountMinSketch sketch;
+        private final int topK;
+        private final ConcurrentHashMap<String, Long> top = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, Long> blocked = new ConcurrentHashMap<>();
+        private final Counter blocks;
+        // Smallest estimate in a full top-K table; keys below it skip the table entirely
+        private volatile long topMinimum;
+
+        Tracker(String type, int width, int depth, int topK, MeterRegistry meterRegistry) {
+            this.type = type;
+            this.sketch = new CountMinSketch(width, depth);
+            this.topK = topK;
+            this.blocks = Counter.builder("heavy.hitters.blocks")
+                .description("Keys added to the failed-login block list")
+                .tag("type", type)
+                .register(meterRegistry);
+            Gauge.builder("heavy.hitters.blocked", blocked, Map::size)
+                .description("Keys currently on the failed-login block list")
+                .tag("type", type)
+                .register(meterRegistry);
+        }
+
+        long blockedUntil(String key, long now) {
+            Long until = key == null ? null : blocked.get(key);
+            if (until == null) {
+                return 0;
+            }
+            if (until <= now) {
+                blocked.remove(key, until);
+            }
+            return until;
+        }
+
+        void record(String key, long now) {
+            if (key == null) {
+                return;
+            }
+            long estimate = sketch.add(key);
+            if (estimate >= blockThreshold && blocked.put(key, now + blockDurationMillis) == null) {
+                blocks.increment();
+                log.warn("Blocking {} {} after ~{} failed logins", type, key, estimate);
+            }
+            offer(key, estimate);
+        }
+
+        private void offer(String key, long estimate) {
+            if (top.computeIfPresent(key, (k, v) -> estimate) != null) {
+                return;
+            }
+            if (top.size() >= topK && estimate <= topMinimum) {
+                return;
+            }
+            synchronized (this) {
+                top.put(key, estimate);
+                trim();
+            }
+        }
+
+        synchronized void decay(long now) {
+            sketch.decay();
+            top.replaceAll((k, v) -> v >>> 1);
+            top.values().removeIf(v -> v == 0);
+            trim();
+            blocked.values().removeIf(until -> until <= now);
+        }
+
+        private void trim() {
+            while (top.size() > topK) {
+                top.entrySet().stream()
+                    .min(Map.Entry.comparingByValue())
+                    .ifPresent(e -> top.remove(e.getKey(), e.getValue()));
+            }
+            topMinimum = top.size() < topK ? 0 : top.values().stream().mapToLong(Long::longValue).min().orElse(0);
+        }
+
+        List<HeavyHitterEntry> offenders() {
+            List<HeavyHitterEntry> entries = new ArrayList<>(top.size());
+            top.forEach((key, estimate) -> {
+                Long until = blocked.get(key);
+                entries.add(HeavyHitterEntry.builder()
+                    .key(key)
+                    .estimatedFailures(estimate)
+                    .blockedUntil(until == null ? null : Instant.ofEpochMilli(until))
+                    .build());
+            });
+            // Blocked keys pushed out of a full top-K table are still listed
+            blocked.forEach((key, until) -> {
+                if (!top.containsKey(key)) {
+                    entries.add(HeavyHitterEntry.builder()
+                        .key(key)
+                        .estimatedFailures(sketch.estimate(key))
+                        .blockedUntil(Instant.ofEpochMilli(until))
+                        .build());
+                }
+            });
+            entries.sort(Comparator.comparingLong(HeavyHitterEntry::getEstimatedFailures).reversed());
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.authserver.service;
+
+import com.authserver.repository.RateLimitTrackingRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+
+/**
+ * Counters in rate_limit_tracking, one row per identifier, action and aligned window, counted with a
+ * single conditional upsert per check that only counts allowed attempts, as the local engine does. Fixed-window policies use the count as is; sliding-window and token-bucket
+ * policies are both evaluated as a sliding window counter over the current and previous rows. Kept
+ * as a fallback for deployments that want the counters in the database. Old windows are removed by
+ * dropping daily partitions (see PartitionMaintenanceService).
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rate-limit.engine", havingValue = "jpa")
+public class JpaRateLimitEngine implements RateLimitEngine {
+
+    private final RateLimitTrackingRepository rateLimitRepository;
+
+    @Override
+    @Transactional
+    public long tryConsume(String identifier, RateLimitPolicy policy) {
+        long nowMillis = System.currentTimeMillis();
+        long windowStartMillis = policy.alignedWindowStart(nowMillis);
+
+        LocalDateTime windowStart = toLocalDateTime(windowStartMillis);
+        boolean fixedWindow = policy.getAlgorithm() == RateLimitPolicy.Algorithm.FIXED_WINDOW;
+
+        // Sliding window counter (also used for token-bucket policies, which have no row representation here).
+        // The previous window is read first so the upsert only counts attempts that will be allowed
+        int previous = fixedWindow ? 0 : rateLimitRepository.findAttemptCount(identifier, policy.getName(),
+            toLocalDateTime(windowStartMillis - policy.getWindowMillis())).orElse(0);
+        int maxCount = fixedWindow ? policy.getLimit() : policy.slidingWindowCapacity(nowMillis, windowStartMillis, previous);
+
+        Optional<Integer> attempts = rateLimitRepository.incrementAttemptCount(identifier, policy.getName(), windowStart, maxCount);
+        if (attempts.isEmpty()) {
+            // Rejected and not counted; the stored count only tells how long until the next attempt is allowed
+            int current = rateLimitRepository.findAttemptCount(identifier, policy.getName(), windowStart).orElse(0);
+            return fixedWindow ? policy.fixedWindow(nowMillis, windowStartMillis, current + 1)
+                : policy.slidingWindow(nowMillis, windowStartMillis, previous, current);
+        }
+        return fixedWindow ? policy.fixedWindow(nowMillis, windowStartMillis, attempts.get())
+            : policy.slidingWindow(nowMillis, windowStartMillis, previous, attempts.get() - 1);
+    }
+
+    @Override
+    @Transactional
+    public void reset(String identifier, RateLimitPolicy policy) {
+        rateLimitRepository.deleteByIdentifierAndActionType(identifier, policy.getName());
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,74 @@
+package com.authserver.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind for users.last_login. Logins only record the latest instant per user in memory;
+ * repeated logins between flushes coalesce into one write, and each flush is a single JDBC batch.
+ * last_login therefore lags by at most the flush interval. The write bumps updated_at too, so
+ * incremental exports by updated_at pick up new logins.
+ */
+@Slf4j
+@Component
+public class LastLoginRecorder {
+
+    private static final String UPDATE_SQL =
+        "UPDATE users SET last_login = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ? AND (last_login IS NULL OR last_login < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<UUID, Timestamp> pending = new ConcurrentHashMap<>();
+
+    public LastLoginRecorder(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("users.last-login.pending", pending, ConcurrentHashMap::size)
+            .description("Users with a last_login not yet written")
+            .register(meterRegistry);
+    }
+
+    public void record(UUID userId) {
+        pending.put(userId, new Timestamp(System.currentTimeMillis()));
+    }
+
+    @Scheduled(fixedDelayString = "${last-login.flush-interval:10000}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // remove() hands each entry over atomically; a login recorded after that waits for the next flush
+        List<Map.Entry<UUID, Timestamp>> batch = new ArrayList<>(pending.size());
+        for (UUID userId : pending.keySet()) {
+            Timestamp lastLogin = pending.remove(userId);
+            if (lastLogin != null) {
+                batch.add(Map.entry(userId, lastLogin));
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, entry) -> {
+                ps.setTimestamp(1, entry.getValue());
+                ps.setObject(2, entry.getKey());
+                ps.setTimestamp(3, entry.getValue());
+            });
+        } catch (DataAccessException e) {
+            log.warn("Could not write last_login for {} users, retrying next flush: {}", batch.size(), e.getMessage());
+            batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(),
+                (newer, older) -> newer.after(older) ? newer : older));
+        }
+    }
+}
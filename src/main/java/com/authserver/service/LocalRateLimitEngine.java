@@ -0,0 +1,206 @@
+package com.authserver.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.local.SynchronizationStrategy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory limiters, one per identifier and policy, spread over striped maps. Token-bucket policies
+ * use Bucket4j with greedy refill; fixed-window and sliding-window policies use counters over
+ * aligned windows. Checks allocate nothing once a client's limiter exists. A limiter idle long
+ * enough to have forgotten every attempt is dropped by the sweeper, which loses nothing and keeps
+ * memory proportional to recently active clients. Limits are per instance. With write-behind enabled
+ * every attempt is also handed to RateLimitCounterWriter for batched persistence.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate-limit.engine", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimitEngine implements RateLimitEngine {
+
+    // [policy index][stripe], keyed by identifier so a lookup builds no composite key
+    private final ConcurrentHashMap<String, Limiter>[][] stripes;
+    private final int stripeMask;
+    // Present only in write-behind mode
+    private final RateLimitCounterWriter counterWriter;
+
+    @SuppressWarnings("unchecked")
+    public LocalRateLimitEngine(RateLimitPolicyRegistry policyRegistry,
+                                MeterRegistry meterRegistry,
+                                ObjectProvider<RateLimitCounterWriter> counterWriter,
+                                @Value("${rate-limit.local.stripes:16}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ConcurrentHashMap[policyRegistry.size()][size];
+        for (ConcurrentHashMap<String, Limiter>[] policyStripes : stripes) {
+            for (int i = 0; i < size; i++) {
+                policyStripes[i] = new ConcurrentHashMap<>();
+            }
+        }
+        this.stripeMask = size - 1;
+        this.counterWriter = counterWriter.getIfAvailable();
+
+        Gauge.builder("rate.limit.buckets", this, LocalRateLimitEngine::size)
+            .description("Active in-memory rate limiters")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public long tryConsume(String identifier, RateLimitPolicy policy) {
+        ConcurrentHashMap<String, Limiter> stripe = stripe(identifier, policy);
+        Limiter limiter = stripe.get(identifier);
+        if (limiter == null) {
+            limiter = stripe.computeIfAbsent(identifier, k -> newLimiter(policy));
+        }
+        limiter.lastAccessNanos = System.nanoTime();
+        long result = limiter.tryConsume(policy);
+        if (counterWriter != null) {
+            counterWriter.record(identifier, policy, System.currentTimeMillis());
+        }
+        return result;
+    }
+
+    @Override
+    public void reset(String identifier, RateLimitPolicy policy) {
+        stripe(identifier, policy).remove(identifier);
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, Limiter>[] policyStripes : stripes) {
+            for (ConcurrentHashMap<String, Limiter> stripe : policyStripes) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.local.sweep-interval:60000}")
+    public void evictIdleLimiters() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (ConcurrentHashMap<String, Limiter>[] policyStripes : stripes) {
+            for (ConcurrentHashMap<String, Limiter> stripe : policyStripes) {
+                for (var e : stripe.entrySet()) {
+                    Limiter limiter = e.getValue();
+                    if (now - limiter.lastAccessNanos > limiter.idleNanos && stripe.remove(e.getKey(), limiter)) {
+                        evicted++;
+                    }
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limiters", evicted);
+        }
+    }
+
+    private static Limiter newLimiter(RateLimitPolicy policy) {
+        long windowNanos = policy.getWindow().toNanos();
+        return switch (policy.getAlgorithm()) {
+            case TOKEN_BUCKET -> new TokenBucketLimiter(policy, windowNanos);
+            case FIXED_WINDOW -> new FixedWindowLimiter(windowNanos);
+            // The previous window still weighs on the estimate, so keep two windows of history
+            case SLIDING_WINDOW -> new SlidingWindowLimiter(2 * windowNanos);
+        };
+    }
+
+    private ConcurrentHashMap<String, Limiter> stripe(String identifier, RateLimitPolicy policy) {
+        int h = identifier.hashCode();
+        return stripes[policy.getIndex()][(h ^ (h >>> 16)) & stripeMask];
+    }
+
+    private abstract static class Limiter {
+        final long idleNanos;
+        volatile long lastAccessNanos = System.nanoTime();
+
+        Limiter(long idleNanos) {
+            this.idleNanos = idleNanos;
+        }
+
+        abstract long tryConsume(RateLimitPolicy policy);
+    }
+
+    // Synchronized Bucket4j buckets update in place; the lock-free default copies its state per call
+    private static final class TokenBucketLimiter extends Limiter {
+        private final Bucket bucket;
+        private final long nanosPerToken;
+
+        TokenBucketLimiter(RateLimitPolicy policy, long windowNanos) {
+            super(windowNanos);
+            this.bucket = Bucket.builder()
+                .addLimit(Bandwidth.builder().capacity(policy.getLimit()).refillGreedy(policy.getLimit(), policy.getWindow()).build())
+                .withSynchronizationStrategy(SynchronizationStrategy.SYNCHRONIZED)
+                .build();
+            this.nanosPerToken = windowNanos / policy.getLimit();
+        }
+
+        @Override
+        long tryConsume(RateLimitPolicy policy) {
+            if (bucket.tryConsume(1)) {
+                return RateLimitEngine.allowed(bucket.getAvailableTokens());
+            }
+            // Upper bound of the wait for the next token; the exact figure needs an allocating probe
+            return RateLimitEngine.rejected(nanosPerToken);
+        }
+    }
+
+    private static final class FixedWindowLimiter extends Limiter {
+        private long windowStart;
+        private int attempts;
+
+        FixedWindowLimiter(long idleNanos) {
+            super(idleNanos);
+        }
+
+        @Override
+        synchronized long tryConsume(RateLimitPolicy policy) {
+            long now = System.currentTimeMillis();
+            long start = policy.alignedWindowStart(now);
+            if (start != windowStart) {
+                attempts = 0;
+                windowStart = start;
+            }
+
+            long result = policy.fixedWindow(now, start, attempts + 1);
+            if (result >= 0) {
+                attempts++;
+            }
+            return result;
+        }
+    }
+
+    private static final class SlidingWindowLimiter extends Limiter {
+        private long windowStart;
+        private int previous;
+        private int current;
+
+        SlidingWindowLimiter(long idleNanos) {
+            super(idleNanos);
+        }
+
+        @Override
+        synchronized long tryConsume(RateLimitPolicy policy) {
+            long now = System.currentTimeMillis();
+            long start = policy.alignedWindowStart(now);
+            if (start != windowStart) {
+                previous = start - windowStart == policy.getWindowMillis() ? current : 0;
+                current = 0;
+                windowStart = start;
+            }
+
+            long result = policy.slidingWindow(now, start, previous, current);
+            if (result >= 0) {
+                current++;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.authserver.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Keeps the daily range partitions of rate_limit_tracking and verification_tokens in shape: creates
+ * partitions premake-days ahead and drops partitions whose whole range is older than the table's
+ * retention. Retention is a metadata operation (DETACH PARTITION CONCURRENTLY, then DROP TABLE), so
+ * it neither scans nor bloats the live partitions. Runs at startup and daily through the
+ * ClusterJobScheduler, so only one instance does the DDL.
+ */
+@Slf4j
+@Service
+public class PartitionMaintenanceService {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String PARTITIONS_SQL =
+        "SELECT c.relname FROM pg_inherits i " +
+        "JOIN pg_class c ON c.oid = i.inhrelid " +
+        "JOIN pg_class p ON p.oid = i.inhparent " +
+        "WHERE p.relname = ? ORDER BY c.relname";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterJobScheduler clusterJobs;
+    private final int premakeDays;
+    private final List<PartitionedTable> tables;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       ClusterJobScheduler clusterJobs,
+                                       @Value("${partitioning.premake-days:7}") int premakeDays,
+                                       @Value("${partitioning.retention-days.rate-limit-tracking:1}") int rateLimitRetentionDays,
+                                       @Value("${partitioning.retention-days.verification-tokens:1}") int tokenRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterJobs = clusterJobs;
+        this.premakeDays = premakeDays;
+        this.tables = List.of(
+            new PartitionedTable("rate_limit_tracking", rateLimitRetentionDays),
+            new PartitionedTable("verification_tokens", tokenRetentionDays));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${partitioning.cron:0 10 0 * * *}")
+    public void maintainPartitions() {
+        // Partition DDL is a single step, so the job is one short chunk; DETACH ... CONCURRENTLY
+        // needs autocommit, which JdbcTemplate outside a transaction gives. The slot is a day, matching the
+        // default cron; a run within the last half day counts, which is fine given premake-days of headroom
+        clusterJobs.submit("partition-maintenance", Duration.ofDays(1), chunkSize -> {
+            LocalDate today = LocalDate.now();
+            for (PartitionedTable table : tables) {
+                createPartitions(table, today);
+                dropExpiredPartitions(table, today);
+            }
+            return 0;
+        });
+    }
+
+    private void createPartitions(PartitionedTable table, LocalDate today) {
+        for (int i = 0; i <= premakeDays; i++) {
+            LocalDate day = today.plusDays(i);
+            jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                table.partitionName(day), table.name, day, day.plusDays(1)));
+        }
+    }
+
+    private void dropExpiredPartitions(PartitionedTable table, LocalDate today) {
+        // A daily partition ends at midnight after its date; drop it once that end is past retention
+        LocalDate cutoff = today.minusDays(table.retentionDays);
+        for (String partition : jdbcTemplate.queryForList(PARTITIONS_SQL, String.class, table.name)) {
+            LocalDate day = table.partitionDay(partition);
+            if (day == null || day.plusDays(1).isAfter(cutoff)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table.name + " DETACH PARTITION " + partition + " CONCURRENTLY");
+            jdbcTemplate.execute("DROP TABLE " + partition);
+            log.info("Dropped partition {} past {} day retention", partition, table.retentionDays);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class PartitionedTable {
+        private final String name;
+        private final int retentionDays;
+
+        String partitionName(LocalDate day) {
+            return name + "_p" + SUFFIX.format(day);
+        }
+
+        // Null for partitions that do not follow the naming scheme; those are left alone
+        LocalDate partitionDay(String partition) {
+            String prefix = name + "_p";
+            if (!partition.startsWith(prefix)) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(partition.substring(prefix.length()), SUFFIX);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.authserver.service;
+
+/**
+ * Actions rate limited from code. Each needs a policy under rate-limit.policies.&lt;config key&gt;;
+ * the registry resolves them into an array indexed by ordinal at startup.
+ */
+public enum RateLimitAction {
+    LOGIN,
+    SMS_OTP,
+    API_REQUEST;
+
+    public String configKey() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,166 @@
+package com.authserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind history for the local engine. Decisions come from the in-memory limiters; this only
+ * aggregates attempts per identifier, action and aligned window and adds them to rate_limit_tracking
+ * in JDBC batch upserts every flush interval, or sooner once batch-size keys are pending. A flush
+ * that fails transiently puts its deltas back for the next attempt, up to max-pending windows; a
+ * batch the database rejects outright (constraint, missing partition) is logged and dropped, since
+ * retrying cannot help. The last flush runs on shutdown. Resets do not touch the written rows; they
+ * are history, not limiter state.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate-limit.local.write-behind.enabled", havingValue = "true")
+public class RateLimitCounterWriter {
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO rate_limit_tracking (identifier, action_type, attempt_count, window_start) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (identifier, action_type, window_start) " +
+        "DO UPDATE SET attempt_count = rate_limit_tracking.attempt_count + EXCLUDED.attempt_count, updated_at = CURRENT_TIMESTAMP";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor flushExecutor;
+    private final int batchSize;
+    private final int maxPending;
+    private final ConcurrentHashMap<WindowKey, Integer> deltas = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Timer flushTimer;
+    private final Counter flushedRows;
+    private final Counter droppedAttempts;
+
+    public RateLimitCounterWriter(JdbcTemplate jdbcTemplate,
+                                  @Qualifier("applicationTaskExecutor") Executor flushExecutor,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${rate-limit.local.write-behind.batch-size:1000}") int batchSize,
+                                  @Value("${rate-limit.local.write-behind.max-pending:100000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushExecutor = flushExecutor;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.flushTimer = Timer.builder("rate.limit.write-behind.flush")
+            .description("Batch upserts of aggregated rate-limit counters")
+            .register(meterRegistry);
+        this.flushedRows = Counter.builder("rate.limit.write-behind.rows")
+            .description("Window rows upserted by the write-behind flush")
+            .register(meterRegistry);
+        this.droppedAttempts = Counter.builder("rate.limit.write-behind.dropped")
+            .description("Attempts not written because the pending map was full or the database rejected them")
+            .register(meterRegistry);
+        Gauge.builder("rate.limit.write-behind.pending", deltas, ConcurrentHashMap::size)
+            .description("Windows with attempts not yet written")
+            .register(meterRegistry);
+    }
+
+    public void record(String identifier, RateLimitPolicy policy, long nowMillis) {
+        add(new WindowKey(identifier, policy.getName(), policy.alignedWindowStart(nowMillis)), 1);
+        if (deltas.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // Executor busy or shutting down; the scheduled or final flush picks the deltas up
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.local.write-behind.flush-interval:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public synchronized void flush() {
+        // Bounded to what is pending now, so steady traffic cannot keep one flush going forever
+        for (int batches = (deltas.size() + batchSize - 1) / batchSize; batches > 0; batches--) {
+            // remove() hands over each key's delta atomically; attempts counted after that start a new entry
+            List<Map.Entry<WindowKey, Integer>> batch = new ArrayList<>(batchSize);
+            for (WindowKey key : deltas.keySet()) {
+                Integer count = deltas.remove(key);
+                if (count != null) {
+                    batch.add(Map.entry(key, count));
+                }
+                if (batch.size() == batchSize) {
+                    break;
+                }
+            }
+            if (batch.isEmpty() || !write(batch)) {
+                return;
+            }
+        }
+    }
+
+    private boolean write(List<Map.Entry<WindowKey, Integer>> batch) {
+        Timer.Sample sample = Timer.start();
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (ps, entry) -> {
+                ps.setString(1, entry.getKey().identifier);
+                ps.setString(2, entry.getKey().actionType);
+                ps.setInt(3, entry.getValue());
+                ps.setTimestamp(4, new Timestamp(entry.getKey().windowStart));
+            });
+            flushedRows.increment(batch.size());
+            return true;
+        } catch (DataAccessException e) {
+            // A lost connection is "non-transient" to Spring but clears up; anything else of that kind recurs
+            if (e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException)) {
+                log.error("Rate limit counter flush rejected, dropping {} windows: {}", batch.size(), e.getMessage());
+                batch.forEach(entry -> droppedAttempts.increment(entry.getValue()));
+            } else {
+                log.warn("Rate limit counter flush failed, keeping {} windows for the next attempt: {}", batch.size(), e.getMessage());
+                batch.forEach(entry -> add(entry.getKey(), entry.getValue()));
+            }
+            return false;
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    // While the database is unreachable, windows beyond max-pending are counted as dropped instead of
+    // growing the map; the size check is approximate under concurrency, which is enough for a bound
+    private void add(WindowKey key, int count) {
+        if (deltas.size() >= maxPending && !deltas.containsKey(key)) {
+            droppedAttempts.increment(count);
+            return;
+        }
+        deltas.merge(key, count, Integer::sum);
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class WindowKey {
+        private final String identifier;
+        private final String actionType;
+        private final long windowStart;
+    }
+}
@@ -0,0 +1,24 @@
+package com.authserver.service;
+
+/**
+ * Storage and algorithm behind {@link RateLimitService}. Selected with rate-limit.engine.
+ */
+public interface RateLimitEngine {
+
+    /**
+     * Records one attempt. A result of zero or more means it was allowed and is the number of
+     * attempts left; a negative result means it was rejected and its magnitude is the nanoseconds
+     * until the next attempt would be allowed. Packed into a primitive so checks allocate nothing.
+     */
+    long tryConsume(String identifier, RateLimitPolicy policy);
+
+    void reset(String identifier, RateLimitPolicy policy);
+
+    static long allowed(long remaining) {
+        return Math.max(remaining, 0);
+    }
+
+    static long rejected(long waitNanos) {
+        return -Math.max(waitNanos, 1);
+    }
+}
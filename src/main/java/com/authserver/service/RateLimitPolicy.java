@@ -0,0 +1,88 @@
+package com.authserver.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+public final class RateLimitPolicy {
+
+    public enum Algorithm {
+        FIXED_WINDOW,
+        SLIDING_WINDOW,
+        TOKEN_BUCKET
+    }
+
+    // Stored as the action type / key prefix by the engines, e.g. LOGIN or SMS_OTP
+    private final String name;
+    // Position in the registry, so engines can keep per-policy state in arrays
+    private final int index;
+    private final Algorithm algorithm;
+    private final int limit;
+    private final Duration window;
+    private final long windowMillis;
+    // RateLimit-Policy header value, e.g. 100;w=60
+    private final String headerValue;
+
+    public RateLimitPolicy(String name, int index, Algorithm algorithm, int limit, Duration window) {
+        if (limit <= 0 || window == null || window.toMillis() <= 0) {
+            throw new IllegalArgumentException("Rate limit policy " + name + " needs a positive limit and window");
+        }
+        this.name = name;
+        this.index = index;
+        this.algorithm = algorithm;
+        this.limit = limit;
+        this.window = window;
+        this.windowMillis = window.toMillis();
+        this.headerValue = limit + ";w=" + Math.max(1, window.toSeconds());
+    }
+
+    long alignedWindowStart(long nowMillis) {
+        return nowMillis - nowMillis % windowMillis;
+    }
+
+    /**
+     * Sliding window counter: the previous aligned window's count weighted by how much of it still
+     * overlaps the window ending now, plus the current count. Returns the packed
+     * {@link RateLimitEngine#tryConsume} result for one more attempt on top of {@code current}.
+     */
+    long slidingWindow(long nowMillis, long windowStart, int previous, int current) {
+        double previousWeight = 1 - (nowMillis - windowStart) / (double) windowMillis;
+        double estimate = previous * previousWeight + current + 1;
+        if (estimate <= limit) {
+            return RateLimitEngine.allowed((long) (limit - estimate));
+        }
+
+        long waitMillis;
+        if (current + 1 > limit) {
+            // Not before the next window, and then only once this window's weight has decayed enough
+            waitMillis = windowStart + windowMillis - nowMillis + (long) Math.ceil(windowMillis * (1 - (limit - 1) / (double) current));
+        } else {
+            double allowedWeight = (limit - 1 - current) / (double) previous;
+            waitMillis = windowStart + (long) Math.ceil(windowMillis * (1 - allowedWeight)) - nowMillis;
+        }
+        return RateLimitEngine.rejected(TimeUnit.MILLISECONDS.toNanos(waitMillis));
+    }
+
+    /**
+     * Largest current-window count at which {@link #slidingWindow} still allows one more attempt, so
+     * storage-side counters can refuse to count a rejected attempt.
+     */
+    int slidingWindowCapacity(long nowMillis, long windowStart, int previous) {
+        double previousWeight = 1 - (nowMillis - windowStart) / (double) windowMillis;
+        return (int) Math.floor(limit - previous * previousWeight);
+    }
+
+    long fixedWindow(long nowMillis, long windowStart, int attempts) {
+        if (attempts <= limit) {
+            return RateLimitEngine.allowed(limit - attempts);
+        }
+        return RateLimitEngine.rejected(TimeUnit.MILLISECONDS.toNanos(windowStart + windowMillis - nowMillis));
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + algorithm + " " + limit + "/" + window;
+    }
+}
@@ -0,0 +1,56 @@
+package com.authserver.service;
+
+import com.authserver.config.RateLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Policies from rate-limit.policies, validated at startup. Code-defined actions are precompiled into
+ * an array indexed by {@link RateLimitAction#ordinal()}; policies that exist only in configuration
+ * are looked up by name once by whoever applies them, never per check.
+ */
+@Slf4j
+@Component
+public class RateLimitPolicyRegistry {
+
+    private final RateLimitPolicy[] actionPolicies;
+    private final Map<String, RateLimitPolicy> policiesByName;
+
+    public RateLimitPolicyRegistry(RateLimitProperties properties) {
+        Map<String, RateLimitPolicy> byName = new LinkedHashMap<>();
+        properties.getPolicies().forEach((key, config) -> byName.put(key, new RateLimitPolicy(
+            key.toUpperCase().replace('-', '_'), byName.size(), config.getAlgorithm(), config.getLimit(), config.getWindow())));
+
+        RateLimitAction[] actions = RateLimitAction.values();
+        this.actionPolicies = new RateLimitPolicy[actions.length];
+        for (RateLimitAction action : actions) {
+            RateLimitPolicy policy = byName.get(action.configKey());
+            if (policy == null) {
+                throw new IllegalStateException("No rate limit policy configured for rate-limit.policies." + action.configKey());
+            }
+            actionPolicies[action.ordinal()] = policy;
+        }
+        this.policiesByName = Map.copyOf(byName);
+
+        log.info("Rate limit policies: {}", byName.values());
+    }
+
+    public RateLimitPolicy policy(RateLimitAction action) {
+        return actionPolicies[action.ordinal()];
+    }
+
+    public int size() {
+        return policiesByName.size();
+    }
+
+    public RateLimitPolicy policy(String name) {
+        RateLimitPolicy policy = policiesByName.get(name);
+        if (policy == null) {
+            throw new IllegalArgumentException("No rate limit policy configured for rate-limit.policies." + name);
+        }
+        return policy;
+    }
+}
@@ -0,0 +1,164 @@
+package com.authserver.service;
+
+import com.authserver.model.ReferenceToken;
+import com.authserver.repository.ReferenceTokenRepository;
+import com.authserver.util.ParsedToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+public class ReferenceTokenStore {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final ReferenceTokenRepository referenceTokenRepository;
+    private final ClusterJobScheduler clusterJobs;
+    private final boolean persistenceEnabled;
+    private final ConcurrentHashMap<String, ParsedToken>[] shards;
+    private final int shardMask;
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    @SuppressWarnings("unchecked")
+    public ReferenceTokenStore(ReferenceTokenRepository referenceTokenRepository,
+                               ClusterJobScheduler clusterJobs,
+                               @Value("${reference-token.shards:16}") int shardCount,
+                               @Value("${reference-token.persistence-enabled:false}") boolean persistenceEnabled) {
+        this.referenceTokenRepository = referenceTokenRepository;
+        this.clusterJobs = clusterJobs;
+        this.persistenceEnabled = persistenceEnabled;
+
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shards = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.shardMask = size - 1;
+    }
+
+    public String issue(String type, String subject, String userId, long ttlMillis) {
+        return issue(type, subject, userId, ttlMillis, null, null);
+    }
+
+    public String issue(String type, String subject, String userId, long ttlMillis, String tokenId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = encoder.encodeToString(bytes);
+
+        Date expiration = new Date(System.currentTimeMillis() + ttlMillis);
+        shard(token).put(token, new ParsedToken(subject, userId, type, expiration, tokenId, familyId));
+
+        if (persistenceEnabled) {
+            referenceTokenRepository.save(ReferenceToken.builder()
+                .tokenHash(hash(token))
+                .userId(UUID.fromString(userId))
+                .subject(subject)
+                .type(type)
+                .tokenId(tokenId)
+                .familyId(familyId)
+                .expiresAt(LocalDateTime.ofInstant(expiration.toInstant(), ZoneId.systemDefault()))
+                .build());
+        }
+        return token;
+    }
+
+    // Returns null for unknown, revoked or expired tokens
+    public ParsedToken lookup(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        ConcurrentHashMap<String, ParsedToken> shard = shard(token);
+        ParsedToken parsed = shard.get(token);
+        if (parsed == null && persistenceEnabled) {
+            parsed = referenceTokenRepository.findById(hash(token))
+                .map(ReferenceTokenStore::toParsedToken)
+                .orElse(null);
+            if (parsed != null) {
+                shard.put(token, parsed);
+            }
+        }
+
+        if (parsed != null && parsed.isExpired()) {
+            shard.remove(token, parsed);
+            return null;
+        }
+        return parsed;
+    }
+
+    public void revoke(String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        shard(token).remove(token);
+        if (persistenceEnabled) {
+            referenceTokenRepository.deleteById(hash(token));
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, ParsedToken> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Scheduled(fixedDelayString = "${reference-token.sweep-interval:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (ConcurrentHashMap<String, ParsedToken> shard : shards) {
+            shard.values().removeIf(token -> token.getExpiration().getTime() < now);
+        }
+    }
+
+    @Scheduled(cron = "0 30 * * * *") // Every hour
+    public void cleanupExpiredTokens() {
+        if (persistenceEnabled) {
+            LocalDateTime now = LocalDateTime.now();
+            clusterJobs.submit("reference-token-cleanup", Duration.ofHours(1), chunkSize -> referenceTokenRepository.deleteExpiredChunk(now, chunkSize));
+        }
+    }
+
+    private ConcurrentHashMap<String, ParsedToken> shard(String token) {
+        int h = token.hashCode();
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+
+    private static ParsedToken toParsedToken(ReferenceToken token) {
+        return new ParsedToken(
+            token.getSubject(),
+            token.getUserId().toString(),
+            token.getType(),
+            Date.from(token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant()),
+            token.getTokenId(),
+            token.getFamilyId()
+        );
+    }
+
+    // Hex SHA-256 of a compact token; also keys legacy refresh tokens that carry no jti
+    static String hash(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
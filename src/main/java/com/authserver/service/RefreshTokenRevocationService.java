@@ -0,0 +1,155 @@
+package com.authserver.service;
+
+import com.authserver.exception.UnauthorizedException;
+import com.authserver.model.RefreshTokenRevocation;
+import com.authserver.repository.RefreshTokenRevocationRepository;
+import com.authserver.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One-time-use tracking for refresh tokens. Used jtis and revoked families go into a Bloom filter;
+ * the exact store (pending writes, then Postgres) is only consulted when the filter reports a hit,
+ * so the common refresh never waits on the database. Writes are flushed in batches and other
+ * replicas pick them up on the next sync, which bounds cross-node reuse detection by sync-interval.
+ */
+@Slf4j
+@Service
+public class RefreshTokenRevocationService {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO refresh_token_revocations (id, kind, family_id, expires_at) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (id) DO NOTHING";
+
+    private final RefreshTokenRevocationRepository revocationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterJobScheduler clusterJobs;
+    private final long expectedEntries;
+    private final double falsePositiveProbability;
+    private final long refreshExpiration;
+
+    // Recorded but not yet flushed; part of the exact store until the batch insert commits
+    private final ConcurrentHashMap<String, RefreshTokenRevocation> pending = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    private volatile LocalDateTime lastSync;
+
+    public RefreshTokenRevocationService(RefreshTokenRevocationRepository revocationRepository,
+                                         JdbcTemplate jdbcTemplate,
+                                         ClusterJobScheduler clusterJobs,
+                                         @Value("${refresh-token.filter.expected-entries:1000000}") long expectedEntries,
+                                         @Value("${refresh-token.filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                                         @Value("${jwt.refresh-expiration}") Long refreshExpiration) {
+        this.revocationRepository = revocationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterJobs = clusterJobs;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.refreshExpiration = refreshExpiration;
+        this.filter = new BloomFilter(expectedEntries, falsePositiveProbability);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuildFilter();
+    }
+
+    public void consume(String tokenId, String familyId, Date tokenExpiration) {
+        if (filter.mightContain(familyId) && isRecorded(familyId)) {
+            throw new UnauthorizedException("Refresh token has been revoked");
+        }
+
+        if (filter.mightContain(tokenId) && isRecorded(tokenId)) {
+            revokeFamily(familyId);
+            throw new UnauthorizedException("Refresh token reuse detected");
+        }
+
+        RefreshTokenRevocation used = RefreshTokenRevocation.builder()
+            .id(tokenId)
+            .kind(RefreshTokenRevocation.Kind.USED_TOKEN)
+            .familyId(familyId)
+            .expiresAt(LocalDateTime.ofInstant(tokenExpiration.toInstant(), ZoneId.systemDefault()))
+            .build();
+        if (pending.putIfAbsent(tokenId, used) != null) {
+            revokeFamily(familyId);
+            throw new UnauthorizedException("Refresh token reuse detected");
+        }
+        filter.put(tokenId);
+    }
+
+    public void revokeFamily(String familyId) {
+        RefreshTokenRevocation revoked = RefreshTokenRevocation.builder()
+            .id(familyId)
+            .kind(RefreshTokenRevocation.Kind.REVOKED_FAMILY)
+            .familyId(familyId)
+            .expiresAt(LocalDateTime.now().plus(Duration.ofMillis(refreshExpiration)))
+            .build();
+        pending.putIfAbsent(familyId, revoked);
+        filter.put(familyId);
+        log.warn("Refresh token family revoked: {}", familyId);
+    }
+
+    private boolean isRecorded(String id) {
+        return pending.containsKey(id) || revocationRepository.existsById(id);
+    }
+
+    @Scheduled(fixedDelayString = "${refresh-token.sync-interval:5000}")
+    public void sync() {
+        flush();
+
+        // Overlap the previous window so rows committed out of created_at order are not missed
+        LocalDateTime now = LocalDateTime.now();
+        List<String> ids = revocationRepository.findActiveIdsCreatedAfter(lastSync.minusSeconds(30), now);
+        ids.forEach(filter::put);
+        lastSync = now;
+    }
+
+    // Bloom filters cannot delete; rebuilding from unexpired rows keeps the false-positive rate flat
+    @Scheduled(cron = "0 15 * * * *") // Every hour
+    public void rebuildFilter() {
+        flush();
+
+        LocalDateTime now = LocalDateTime.now();
+        BloomFilter rebuilt = new BloomFilter(expectedEntries, falsePositiveProbability);
+        revocationRepository.findActiveIds(now).forEach(rebuilt::put);
+        pending.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+        lastSync = now;
+        log.info("Rebuilt refresh token revocation filter ({} bytes)", rebuilt.sizeInBytes());
+    }
+
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<RefreshTokenRevocation> batch = new ArrayList<>(pending.values());
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, revocation) -> {
+            ps.setString(1, revocation.getId());
+            ps.setString(2, revocation.getKind().name());
+            ps.setString(3, revocation.getFamilyId());
+            ps.setTimestamp(4, Timestamp.valueOf(revocation.getExpiresAt()));
+        });
+        batch.forEach(revocation -> pending.remove(revocation.getId(), revocation));
+    }
+
+    @Scheduled(cron = "0 45 * * * *") // Every hour
+    public void cleanupExpiredRevocations() {
+        LocalDateTime now = LocalDateTime.now();
+        clusterJobs.submit("refresh-revocation-cleanup", Duration.ofHours(1), chunkSize -> revocationRepository.deleteExpiredChunk(now, chunkSize));
+    }
+}
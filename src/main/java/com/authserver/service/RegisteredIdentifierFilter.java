@@ -0,0 +1,261 @@
+package com.authserver.service;
+
+import com.authserver.model.User;
+import com.authserver.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Bloom filter of every registered email and phone number, so lookups for unknown identifiers
+ * (enumeration, typos) are answered "definitely not registered" without a query. Built at startup
+ * from a streaming scan of users, fed by local registrations, synced with rows created on other
+ * instances every sync-interval and rebuilt hourly. Until the first build finishes every identifier
+ * counts as possibly present, so nothing is ever rejected on a half-built filter. A miss first pulls
+ * in rows created since the last sync (at most once per miss-refresh-interval), so an account just
+ * registered on another instance is not turned away for a whole sync-interval.
+ */
+@Slf4j
+@Component
+public class RegisteredIdentifierFilter {
+
+    private static final String SCAN_SQL = "SELECT email, phone_number FROM users";
+    private static final String CREATED_SINCE_SQL = "SELECT email, phone_number FROM users WHERE created_at > ?";
+    private static final String ESTIMATE_SQL = "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = 'users'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate scanTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final long expectedEntries;
+    private final double falsePositiveProbability;
+    private final long missRefreshNanos;
+    // Rebuilds scan the whole table, so they run here rather than on the shared @Scheduled thread
+    private final ThreadPoolTaskExecutor rebuildExecutor;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Counter absent;
+    private final Counter possiblyPresent;
+    private final Counter falsePositives;
+
+    private volatile BloomFilter filter;
+    // Set while a rebuild scans, so registrations made meanwhile land in the new filter too
+    private volatile BloomFilter building;
+    private volatile LocalDateTime lastSync;
+    private volatile long lastSyncNanos;
+
+    public RegisteredIdentifierFilter(JdbcTemplate jdbcTemplate,
+                                      DataSource dataSource,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${identifier-filter.enabled:true}") boolean enabled,
+                                      @Value("${identifier-filter.expected-entries:1000000}") long expectedEntries,
+                                      @Value("${identifier-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                                      @Value("${identifier-filter.fetch-size:5000}") int fetchSize,
+                                      @Value("${identifier-filter.miss-refresh-interval:1000}") long missRefreshMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.missRefreshNanos = TimeUnit.MILLISECONDS.toNanos(missRefreshMillis);
+
+        this.rebuildExecutor = new ThreadPoolTaskExecutor();
+        this.rebuildExecutor.setCorePoolSize(1);
+        this.rebuildExecutor.setMaxPoolSize(1);
+        this.rebuildExecutor.setThreadNamePrefix("identifier-filter-");
+        this.rebuildExecutor.setWaitForTasksToCompleteOnShutdown(false);
+        this.rebuildExecutor.initialize();
+
+        // Postgres only streams with a fetch size inside a transaction; otherwise it buffers the whole result
+        this.scanTemplate = new JdbcTemplate(dataSource);
+        this.scanTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.absent = Counter.builder("users.identifier-filter.checks")
+            .description("Identifier checks answered by the filter alone")
+            .tag("result", "absent")
+            .register(meterRegistry);
+        this.possiblyPresent = Counter.builder("users.identifier-filter.checks")
+            .description("Identifier checks that went on to the database")
+            .tag("result", "possibly-present")
+            .register(meterRegistry);
+        this.falsePositives = Counter.builder("users.identifier-filter.false-positives")
+            .description("Possibly-present identifiers the database did not know")
+            .register(meterRegistry);
+        Gauge.builder("users.identifier-filter.size", this, f -> f.filter == null ? 0 : f.filter.sizeInBytes())
+            .description("Memory held by the identifier filter")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("users.identifier-filter.expected-fpp", this,
+                f -> f.filter == null ? 0 : f.filter.expectedFalsePositiveProbability())
+            .description("False-positive probability implied by the bits currently set")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // False means definitely not registered; true means the caller has to ask the database
+    public boolean mightContain(String identifier) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        if (current.mightContain(identifier) || (refreshAfterMiss() && filter.mightContain(identifier))) {
+            possiblyPresent.increment();
+            return true;
+        }
+        absent.increment();
+        return false;
+    }
+
+    // Filter first, database only on a possible hit; a hit the database denies counts as a false positive
+    public boolean isRegistered(String identifier, Predicate<String> existsInDatabase) {
+        if (!mightContain(identifier)) {
+            return false;
+        }
+        boolean exists = existsInDatabase.test(identifier);
+        if (!exists) {
+            recordFalsePositive();
+        }
+        return exists;
+    }
+
+    public void recordFalsePositive() {
+        if (filter != null) {
+            falsePositives.increment();
+        }
+    }
+
+    // Called before the row is written, so the filter never lags a committed registration on this node
+    public void add(User user) {
+        add(user.getEmail(), user.getPhoneNumber());
+    }
+
+    public void add(String email, String phoneNumber) {
+        put(email);
+        put(phoneNumber);
+    }
+
+    @Scheduled(fixedDelayString = "${identifier-filter.sync-interval:5000}")
+    public synchronized void sync() {
+        if (filter == null) {
+            return;
+        }
+        // Overlap the previous window so rows committed out of created_at order are not missed
+        LocalDateTime now = LocalDateTime.now();
+        lastSyncNanos = System.nanoTime();
+        try {
+            jdbcTemplate.query(CREATED_SINCE_SQL, this::putRow, Timestamp.valueOf(lastSync.minusSeconds(30)));
+            lastSync = now;
+        } catch (DataAccessException e) {
+            log.warn("Could not sync identifier filter: {}", e.getMessage());
+        }
+    }
+
+    // Syncs unless that happened within miss-refresh-interval, which bounds the extra queries an
+    // enumeration run can cause; misses arriving during the sync wait for it and then recheck
+    private boolean refreshAfterMiss() {
+        if (System.nanoTime() - lastSyncNanos < missRefreshNanos) {
+            return false;
+        }
+        synchronized (this) {
+            if (System.nanoTime() - lastSyncNanos >= missRefreshNanos) {
+                sync();
+            }
+        }
+        return true;
+    }
+
+    // Bloom filters cannot delete, and a growing table needs a larger filter; rebuilding handles both
+    @Scheduled(cron = "${identifier-filter.rebuild-cron:0 30 * * * *}")
+    public void scheduleRebuild() {
+        if (enabled && rebuilding.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+    }
+
+    private void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        long started = System.nanoTime();
+        try {
+            Long estimatedUsers = jdbcTemplate.queryForObject(ESTIMATE_SQL, Long.class);
+            // Up to two identifiers per user, with headroom for growth until the next rebuild
+            long expected = Math.max(expectedEntries, estimatedUsers == null ? 0 : estimatedUsers * 3);
+            BloomFilter rebuilt = new BloomFilter(expected, falsePositiveProbability);
+            building = rebuilt;
+
+            RowCallbackHandler into = row -> {
+                putInto(rebuilt, row.getString(1));
+                putInto(rebuilt, row.getString(2));
+            };
+            readOnlyTransaction.executeWithoutResult(status -> scanTemplate.query(SCAN_SQL, into));
+
+            filter = rebuilt;
+            lastSync = startedAt;
+            lastSyncNanos = started;
+            log.info("Rebuilt identifier filter in {} ms ({} bytes)",
+                (System.nanoTime() - started) / 1_000_000, rebuilt.sizeInBytes());
+        } catch (DataAccessException e) {
+            log.error("Could not rebuild identifier filter, keeping the current one", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdown();
+    }
+
+    private void putRow(ResultSet row) throws SQLException {
+        put(row.getString(1));
+        put(row.getString(2));
+    }
+
+    private void put(String identifier) {
+        putInto(filter, identifier);
+        putInto(building, identifier);
+    }
+
+    private static void putInto(BloomFilter target, String identifier) {
+        if (target != null && identifier != null) {
+            target.put(identifier);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.authserver.service;
+
+import com.authserver.dto.TokenIntrospectionResponse;
+import com.authserver.dto.TokenResponse;
+import com.authserver.exception.UnauthorizedException;
+import com.authserver.util.JwtUtil;
+import com.authserver.util.ParsedToken;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class TokenService {
+
+    private final JwtUtil jwtUtil;
+    private final ReferenceTokenStore referenceTokenStore;
+    private final RefreshTokenRevocationService revocationService;
+
+    @Value("${jwt.expiration}")
+    private Long expiration;
+
+    @Value("${jwt.refresh-expiration}")
+    private Long refreshExpiration;
+
+    @Value("${reference-token.enabled:false}")
+    private boolean referenceTokensEnabled;
+
+    @Value("${refresh-token.rotation-enabled:true}")
+    private boolean rotationEnabled;
+
+    public TokenResponse issueTokens(String subject, String userId) {
+        return issueTokens(subject, userId, UUID.randomUUID().toString());
+    }
+
+    // Exchanges a resolved, unexpired refresh token for a new pair in the same family.
+    // With rotation on, each refresh token works once; presenting it again revokes the whole family.
+    // Tokens minted before jti/fid existed are keyed by their hash, so they are single-use too. Their
+    // family id is a name-based UUID of that hash: stable across replays, so reuse still revokes the
+    // descendants, and never equal to the used-token id, which the family check would take for a revocation.
+    public TokenResponse rotate(String refreshToken, ParsedToken parsed) {
+        String legacyKey = parsed.getTokenId() == null || parsed.getFamilyId() == null
+            ? ReferenceTokenStore.hash(refreshToken) : null;
+        String tokenId = parsed.getTokenId() != null ? parsed.getTokenId() : legacyKey;
+        String familyId = parsed.getFamilyId() != null ? parsed.getFamilyId() : legacyFamilyId(legacyKey);
+        if (rotationEnabled) {
+            revocationService.consume(tokenId, familyId, parsed.getExpiration());
+            revoke(refreshToken);
+        }
+        return issueTokens(parsed.getSubject(), parsed.getUserId(), familyId);
+    }
+
+    private static String legacyFamilyId(String legacyKey) {
+        return UUID.nameUUIDFromBytes(("family:" + legacyKey).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private TokenResponse issueTokens(String subject, String userId, String familyId) {
+        String tokenId = UUID.randomUUID().toString();
+        String accessToken;
+        String refreshToken;
+        if (referenceTokensEnabled) {
+            accessToken = referenceTokenStore.issue(ParsedToken.TYPE_ACCESS, subject, userId, expiration);
+            refreshToken = referenceTokenStore.issue(ParsedToken.TYPE_REFRESH, subject, userId, refreshExpiration,
+                tokenId, familyId);
+        } else {
+            accessToken = jwtUtil.generateAccessToken(subject, userId);
+            refreshToken = jwtUtil.generateRefreshToken(subject, userId, tokenId, familyId);
+        }
+
+        return TokenResponse.builder()
+            .accessToken(accessToken)
+            .refreshToken(refreshToken)
+            .tokenType("Bearer")
+            .expiresIn(expiration / 1000)
+            .scope("openid profile email")
+            .build();
+    }
+
+    // Accepts either format so tokens issued before a mode switch keep working until they expire
+    public ParsedToken resolve(String token) {
+        if (referenceTokensEnabled && token != null && token.indexOf('.') < 0) {
+            ParsedToken parsed = referenceTokenStore.lookup(token);
+            if (parsed == null) {
+                throw new UnauthorizedException("Invalid or expired token");
+            }
+            return parsed;
+        }
+
+        try {
+            return jwtUtil.parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new UnauthorizedException("Invalid or expired token");
+        }
+    }
+
+    public TokenIntrospectionResponse introspect(String token) {
+        ParsedToken parsed;
+        try {
+            parsed = resolve(token);
+        } catch (UnauthorizedException e) {
+            return TokenIntrospectionResponse.builder().active(false).build();
+        }
+
+        return TokenIntrospectionResponse.builder()
+            .active(!parsed.isExpired())
+            .sub(parsed.getSubject())
+            .userId(parsed.getUserId())
+            .tokenType(parsed.getType())
+            .exp(parsed.getExpiration().getTime() / 1000)
+            .build();
+    }
+
+    public void revoke(String token) {
+        if (referenceTokensEnabled && token != null && token.indexOf('.') < 0) {
+            referenceTokenStore.revoke(token);
+        }
+    }
+}
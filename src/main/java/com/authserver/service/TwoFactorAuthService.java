@@ -24,6 +24,7 @@ import java.util.UUID;
 public class TwoFactorAuthService {
 
     private final UserRepository userRepository;
+    private final UserCredentialsCache userCache;
     private final QRCodeUtil qrCodeUtil;
     private final GoogleAuthenticator googleAuthenticator = new GoogleAuthenticator();
 
@@ -44,6 +45,7 @@ public class TwoFactorAuthService {
 
         user.setTwoFactorSecret(secret);
         userRepository.save(user);
+        userCache.invalidate(user);
 
         String accountName = user.getEmail() != null ? user.getEmail() : user.getPhoneNumber();
         String otpAuthUrl = GoogleAuthenticatorQRGenerator.getOtpAuthTotpURL(
@@ -79,6 +81,7 @@ public class TwoFactorAuthService {
 
         user.setTwoFactorEnabled(true);
         userRepository.save(user);
+        userCache.invalidate(user);
         log.info("Two-factor authentication enabled for user: {}", userId);
     }
 
@@ -98,6 +101,7 @@ public class TwoFactorAuthService {
         user.setTwoFactorEnabled(false);
         user.setTwoFactorSecret(null);
         userRepository.save(user);
+        userCache.invalidate(user);
         log.info("Two-factor authentication disabled for user: {}", userId);
     }
 
@@ -0,0 +1,89 @@
+package com.authserver.service;
+
+import com.authserver.model.User;
+import com.authserver.model.UserCredentials;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Near cache of UserCredentials snapshots, keyed by login identifier (email or phone number), the
+ * only lookup on the login path. Entries expire after a short TTL, which bounds how long another instance can keep serving
+ * a snapshot after a write there. Local writes invalidate straight away and again once their
+ * transaction commits, so a reload that raced the write cannot keep the pre-commit row. Unknown
+ * identifiers are not cached. Invalidation is local only, so the cache is off unless user-cache.enabled
+ * is set, which is safe only when a single instance serves logins.
+ */
+@Component
+public class UserCredentialsCache {
+
+    private final Cache<String, UserCredentials> byIdentifier;
+
+    public UserCredentialsCache(@Value("${user-cache.enabled:false}") boolean enabled,
+                                @Value("${user-cache.maximum-size:100000}") long maximumSize,
+                                @Value("${user-cache.ttl:30000}") long ttlMillis,
+                                MeterRegistry meterRegistry) {
+        if (!enabled) {
+            this.byIdentifier = null;
+            return;
+        }
+        this.byIdentifier = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMillis))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byIdentifier, "users.by-identifier");
+    }
+
+    public boolean isEnabled() {
+        return byIdentifier != null;
+    }
+
+    public Optional<UserCredentials> findByIdentifier(String identifier, Function<String, Optional<UserCredentials>> loader) {
+        if (byIdentifier == null) {
+            return loader.apply(identifier);
+        }
+        return Optional.ofNullable(byIdentifier.get(identifier, key -> loader.apply(key).orElse(null)));
+    }
+
+    public void invalidate(User user) {
+        invalidate(user.getEmail(), user.getPhoneNumber());
+    }
+
+    public void invalidate(UserCredentials credentials) {
+        invalidate(credentials.getEmail(), credentials.getPhoneNumber());
+    }
+
+    private void invalidate(String email, String phoneNumber) {
+        if (byIdentifier == null) {
+            return;
+        }
+        evict(email, phoneNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(email, phoneNumber);
+                }
+            });
+        }
+    }
+
+    private void evict(String email, String phoneNumber) {
+        if (email != null) {
+            byIdentifier.invalidate(email);
+        }
+        if (phoneNumber != null) {
+            byIdentifier.invalidate(phoneNumber);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.authserver.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads bulk-import records one line at a time, so memory does not grow with the input. CSV needs a
+ * header row and one record per line; NDJSON is one JSON object per line. Field names are matched
+ * case-insensitively with underscores ignored (phone_number and phoneNumber both work): email,
+ * phone_number, password, password_hash, email_verified, phone_verified. Blank lines are not
+ * records; a line that does not parse comes back as an invalid record instead of ending the import.
+ */
+class UserImportReader implements Closeable {
+
+    enum Format {
+        CSV, NDJSON;
+
+        // Null when the name or content type is not one we read
+        static Format detect(String nameOrContentType) {
+            if (nameOrContentType == null) {
+                return null;
+            }
+            String value = nameOrContentType.toLowerCase(Locale.ROOT);
+            if (value.equals("csv") || value.endsWith(".csv") || value.startsWith("text/csv")) {
+                return CSV;
+            }
+            if (value.equals("ndjson") || value.endsWith(".ndjson") || value.endsWith(".jsonl")
+                    || value.startsWith("application/x-ndjson")) {
+                return NDJSON;
+            }
+            return null;
+        }
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private List<String> header;
+    private long recordNumber;
+
+    UserImportReader(InputStream input, Format format, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    // Passes over records a previous run already committed, without parsing them
+    long skip(long records) throws IOException {
+        long skipped = 0;
+        while (skipped < records && nextLine() != null) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    // Null at the end of the input
+    Record next() throws IOException {
+        String line = nextLine();
+        if (line == null) {
+            return null;
+        }
+        try {
+            return format == Format.CSV ? fromCsv(line) : fromJson(line);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return Record.invalid(recordNumber, "unreadable line");
+        }
+    }
+
+    private String nextLine() throws IOException {
+        if (format == Format.CSV && header == null) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                return null;
+            }
+            header = new ArrayList<>();
+            for (String name : splitCsv(headerLine.replace("\uFEFF", ""))) {
+                header.add(normalize(name));
+            }
+        }
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && line.isBlank());
+        if (line != null) {
+            recordNumber++;
+        }
+        return line;
+    }
+
+    private Record fromCsv(String line) {
+        List<String> values = splitCsv(line);
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size() && i < values.size(); i++) {
+            fields.put(header.get(i), values.get(i));
+        }
+        return Record.of(recordNumber, fields);
+    }
+
+    private Record fromJson(String line) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(line);
+        if (!node.isObject()) {
+            return Record.invalid(recordNumber, "not a JSON object");
+        }
+        Map<String, String> fields = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> entries = node.fields();
+        while (entries.hasNext()) {
+            Map.Entry<String, JsonNode> entry = entries.next();
+            if (!entry.getValue().isNull()) {
+                fields.put(normalize(entry.getKey()), entry.getValue().asText());
+            }
+        }
+        return Record.of(recordNumber, fields);
+    }
+
+    // RFC 4180 fields within one line: quoted fields may contain commas and doubled quotes
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    static final class Record {
+        final long number;
+        final String email;
+        final String phoneNumber;
+        final String password;
+        final String passwordHash;
+        final boolean emailVerified;
+        final boolean phoneVerified;
+        final String error;
+
+        private Record(long number, Map<String, String> fields, String error) {
+            this.number = number;
+            this.email = blankToNull(fields.get("email"));
+            this.phoneNumber = blankToNull(fields.get("phonenumber"));
+            // Passwords are taken verbatim; surrounding spaces may be part of them
+            String password = fields.get("password");
+            this.password = password == null || password.isEmpty() ? null : password;
+            this.passwordHash = blankToNull(fields.get("passwordhash"));
+            this.emailVerified = isTrue(fields.get("emailverified"));
+            this.phoneVerified = isTrue(fields.get("phoneverified"));
+            this.error = error;
+        }
+
+        static Record of(long number, Map<String, String> fields) {
+            return new Record(number, fields, null);
+        }
+
+        static Record invalid(long number, String error) {
+            return new Record(number, Map.of(), error);
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+
+        private static boolean isTrue(String value) {
+            if (value == null) {
+                return false;
+            }
+            String v = value.trim().toLowerCase(Locale.ROOT);
+            return v.equals("true") || v.equals("t") || v.equals("1") || v.equals("yes");
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.authserver.service;
+
+import com.authserver.dto.UserImportResult;
+import com.authserver.exception.CustomException;
+import com.authserver.util.TimedTransactionTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk import of users from CSV or NDJSON, for migrations from another identity provider. Input is
+ * streamed in batches of batch-size records, so memory stays flat however large the file is. Each
+ * batch hashes its raw passwords in parallel on a dedicated fork-join pool (pre-hashed passwords are
+ * taken as they are), COPYs the rows into a temporary staging table and moves them into users with
+ * INSERT ... ON CONFLICT DO NOTHING. Records whose email or phone number is already registered are
+ * counted as skipped. The job's checkpoint is written in the same transaction as its batch, so
+ * running the same job id again resumes after the last committed record. No emails or SMS are sent.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    private static final String STAGING_SQL =
+        "CREATE TEMP TABLE user_import_staging (email VARCHAR(255), phone_number VARCHAR(20), " +
+        "password_hash VARCHAR(255), email_verified BOOLEAN, phone_verified BOOLEAN) ON COMMIT DROP";
+    private static final String COPY_SQL =
+        "COPY user_import_staging (email, phone_number, password_hash, email_verified, phone_verified) " +
+        "FROM STDIN WITH (FORMAT csv)";
+    private static final String INSERT_SQL =
+        "INSERT INTO users (email, phone_number, password_hash, email_verified, phone_verified) " +
+        "SELECT email, phone_number, password_hash, email_verified, phone_verified FROM user_import_staging " +
+        "ON CONFLICT DO NOTHING";
+    private static final String CHECKPOINT_SQL =
+        "INSERT INTO user_import_checkpoints (job_id, status, records_read, imported, skipped, invalid, started_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+        "ON CONFLICT (job_id) DO UPDATE SET status = EXCLUDED.status, records_read = EXCLUDED.records_read, " +
+        "imported = EXCLUDED.imported, skipped = EXCLUDED.skipped, invalid = EXCLUDED.invalid, updated_at = CURRENT_TIMESTAMP";
+    private static final String FIND_CHECKPOINT_SQL =
+        "SELECT job_id, status, records_read, imported, skipped, invalid, started_at, updated_at " +
+        "FROM user_import_checkpoints WHERE job_id = ?";
+
+    // Hashes DelegatingPasswordEncoder can match: {id}-prefixed, or legacy unprefixed BCrypt
+    private static final Pattern PREFIXED_HASH = Pattern.compile("^\\{(bcrypt|argon2)}\\S+$");
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimedTransactionTemplate transactions;
+    private final PasswordEncoder passwordEncoder;
+    private final RegisteredIdentifierFilter identifierFilter;
+    private final ObjectMapper objectMapper;
+    private final ForkJoinPool hashingPool;
+    private final int batchSize;
+    private final long progressInterval;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Counter importedRecords;
+    private final Counter skippedRecords;
+    private final Counter invalidRecords;
+    private final Timer batchTimer;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             TimedTransactionTemplate transactions,
+                             PasswordEncoder passwordEncoder,
+                             RegisteredIdentifierFilter identifierFilter,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${user-import.batch-size:5000}") int batchSize,
+                             @Value("${user-import.parallelism:0}") int parallelism,
+                             @Value("${user-import.progress-interval:100000}") long progressInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactions = transactions;
+        this.passwordEncoder = passwordEncoder;
+        this.identifierFilter = identifierFilter;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.progressInterval = progressInterval;
+        // Separate from the login hashing pool, so an import cannot crowd out logins' hashing admission
+        this.hashingPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+        this.importedRecords = records(meterRegistry, "imported");
+        this.skippedRecords = records(meterRegistry, "skipped");
+        this.invalidRecords = records(meterRegistry, "invalid");
+        this.batchTimer = Timer.builder("users.import.batch")
+            .description("Hashing and COPY of one import batch")
+            .register(meterRegistry);
+    }
+
+    private static Counter records(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("users.import.records")
+            .description("Bulk import records by outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    public Optional<UserImportResult> findProgress(String jobId) {
+        return jdbcTemplate.query(FIND_CHECKPOINT_SQL, (rs, rowNum) -> UserImportResult.builder()
+            .jobId(rs.getString("job_id"))
+            .status(rs.getString("status"))
+            .recordsRead(rs.getLong("records_read"))
+            .imported(rs.getLong("imported"))
+            .skipped(rs.getLong("skipped"))
+            .invalid(rs.getLong("invalid"))
+            .startedAt(rs.getTimestamp("started_at").toLocalDateTime())
+            .updatedAt(rs.getTimestamp("updated_at").toLocalDateTime())
+            .build(), jobId).stream().findFirst();
+    }
+
+    // Imports or resumes jobId from input; the format is csv or ndjson, a file name or a content type
+    public UserImportResult importUsers(String jobId, InputStream input, String format) {
+        if (jobId == null || jobId.isBlank() || jobId.length() > 100) {
+            throw new CustomException("Import job id is required (at most 100 characters)");
+        }
+        UserImportReader.Format inputFormat = UserImportReader.Format.detect(format);
+        if (inputFormat == null) {
+            throw new CustomException("Unsupported import format: " + format + " (expected csv or ndjson)");
+        }
+        if (!running.add(jobId)) {
+            throw new CustomException("Import " + jobId + " is already running", HttpStatus.CONFLICT);
+        }
+        try (UserImportReader reader = new UserImportReader(input, inputFormat, objectMapper)) {
+            return run(jobId, reader);
+        } catch (IOException e) {
+            throw new CustomException("Could not read import input: " + e.getMessage());
+        } finally {
+            running.remove(jobId);
+        }
+    }
+
+    private UserImportResult run(String jobId, UserImportReader reader) throws IOException {
+        UserImportResult progress = findProgress(jobId).orElseGet(() -> UserImportResult.builder()
+            .jobId(jobId)
+            .startedAt(LocalDateTime.now())
+            .build());
+        if ("COMPLETED".equals(progress.getStatus())) {
+            log.info("Import {} already completed, nothing to do", jobId);
+            return progress;
+        }
+        if (progress.getRecordsRead() > 0) {
+            long skipped = reader.skip(progress.getRecordsRead());
+            log.info("Import {} resuming after record {}", jobId, skipped);
+        }
+
+        long startNanos = System.nanoTime();
+        long readAtStart = progress.getRecordsRead();
+        try {
+            List<UserImportReader.Record> batch = new ArrayList<>(batchSize);
+            UserImportReader.Record record;
+            while ((record = reader.next()) != null) {
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    writeBatch(progress, batch);
+                    batch.clear();
+                    logProgress(progress, readAtStart, startNanos);
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(progress, batch);
+            }
+            progress.setStatus("COMPLETED");
+            saveCheckpoint(progress);
+        } catch (RuntimeException | IOException e) {
+            // The checkpoint keeps the last committed batch; rerunning the job continues from there
+            progress.setStatus("FAILED");
+            saveCheckpoint(progress);
+            log.error("Import {} failed after {} records", jobId, progress.getRecordsRead(), e);
+            throw e;
+        }
+
+        log.info("Import {} completed: {} records, {} imported, {} skipped, {} invalid in {} s", jobId,
+            progress.getRecordsRead(), progress.getImported(), progress.getSkipped(), progress.getInvalid(),
+            Duration.ofNanos(System.nanoTime() - startNanos).toSeconds());
+        return findProgress(jobId).orElse(progress);
+    }
+
+    private void writeBatch(UserImportResult progress, List<UserImportReader.Record> batch) {
+        Timer.Sample sample = Timer.start();
+
+        // parallelStream inside the pool's own task runs on that pool, not the common one
+        List<ImportRow> rows = hashingPool.submit(() -> batch.parallelStream()
+            .map(record -> toRow(progress.getJobId(), record))
+            .filter(Objects::nonNull)
+            .toList()).join();
+
+        StringBuilder copyData = new StringBuilder(rows.size() * 128);
+        for (ImportRow row : rows) {
+            identifierFilter.add(row.email, row.phoneNumber);
+            appendCsv(copyData, row.email).append(',');
+            appendCsv(copyData, row.phoneNumber).append(',');
+            appendCsv(copyData, row.passwordHash).append(',');
+            copyData.append(row.emailVerified).append(',').append(row.phoneVerified).append('\n');
+        }
+
+        int invalid = batch.size() - rows.size();
+        UserImportResult next = UserImportResult.builder()
+            .jobId(progress.getJobId())
+            .status("RUNNING")
+            .recordsRead(progress.getRecordsRead() + batch.size())
+            .invalid(progress.getInvalid() + invalid)
+            .startedAt(progress.getStartedAt())
+            .build();
+
+        int imported = transactions.execute("user-import-batch", () -> {
+            int inserted = 0;
+            if (!rows.isEmpty()) {
+                jdbcTemplate.execute(STAGING_SQL);
+                jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                    try {
+                        return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyIn(COPY_SQL, new StringReader(copyData.toString()));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("COPY into staging failed", e);
+                    }
+                });
+                inserted = jdbcTemplate.update(INSERT_SQL);
+            }
+            next.setImported(progress.getImported() + inserted);
+            next.setSkipped(progress.getSkipped() + rows.size() - inserted);
+            saveCheckpoint(next);
+            return inserted;
+        });
+
+        // Only advance once the batch and its checkpoint have committed
+        progress.setStatus(next.getStatus());
+        progress.setRecordsRead(next.getRecordsRead());
+        progress.setImported(next.getImported());
+        progress.setSkipped(next.getSkipped());
+        progress.setInvalid(next.getInvalid());
+
+        importedRecords.increment(imported);
+        skippedRecords.increment(rows.size() - imported);
+        invalidRecords.increment(invalid);
+        sample.stop(batchTimer);
+    }
+
+    // Null for records that cannot be imported; the reason is logged at debug level
+    private ImportRow toRow(String jobId, UserImportReader.Record record) {
+        String error = record.error;
+        if (error == null) {
+            error = validate(record);
+        }
+        if (error != null) {
+            log.debug("Import {}: record {} rejected: {}", jobId, record.number, error);
+            return null;
+        }
+        String passwordHash = record.passwordHash != null ? record.passwordHash : passwordEncoder.encode(record.password);
+        return new ImportRow(record.email, record.phoneNumber, passwordHash, record.emailVerified, record.phoneVerified);
+    }
+
+    private static String validate(UserImportReader.Record record) {
+        if (record.email == null && record.phoneNumber == null) {
+            return "email or phone_number is required";
+        }
+        if (record.email != null && (record.email.length() > 255 || !record.email.contains("@"))) {
+            return "invalid email";
+        }
+        if (record.phoneNumber != null && record.phoneNumber.length() > 20) {
+            return "phone_number longer than 20 characters";
+        }
+        if (record.passwordHash != null) {
+            if (record.passwordHash.length() > 255 || !(PREFIXED_HASH.matcher(record.passwordHash).matches()
+                    || BCRYPT_HASH.matcher(record.passwordHash).matches())) {
+                return "unsupported password_hash format";
+            }
+        } else if (record.password == null) {
+            return "password or password_hash is required";
+        }
+        return null;
+    }
+
+    // Every value quoted, so an empty string and NULL (nothing between the commas) stay distinct
+    private static StringBuilder appendCsv(StringBuilder out, String value) {
+        if (value != null) {
+            out.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return out;
+    }
+
+    private void saveCheckpoint(UserImportResult progress) {
+        jdbcTemplate.update(CHECKPOINT_SQL, progress.getJobId(), progress.getStatus(), progress.getRecordsRead(),
+            progress.getImported(), progress.getSkipped(), progress.getInvalid(), Timestamp.valueOf(progress.getStartedAt()));
+    }
+
+    private void logProgress(UserImportResult progress, long readAtStart, long startNanos) {
+        long readThisRun = progress.getRecordsRead() - readAtStart;
+        if (readThisRun % progressInterval >= batchSize) {
+            return;
+        }
+        double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        log.info("Import {}: {} records read, {} imported, {} skipped, {} invalid ({} records/s)", progress.getJobId(),
+            progress.getRecordsRead(), progress.getImported(), progress.getSkipped(), progress.getInvalid(),
+            Math.round(readThisRun / seconds));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    @RequiredArgsConstructor
+    private static final class ImportRow {
+        private final String email;
+        private final String phoneNumber;
+        private final String passwordHash;
+        private final boolean emailVerified;
+        private final boolean phoneVerified;
+    }
+}
@@ -2,105 +2,151 @@ package com.authserver.service;
 
 import com.authserver.dto.*;
 import com.authserver.exception.CustomException;
+import com.authserver.exception.RateLimitExceededException;
 import com.authserver.exception.UnauthorizedException;
 import com.authserver.model.User;
+import com.authserver.model.UserCredentials;
 import com.authserver.model.VerificationToken;
 import com.authserver.repository.UserRepository;
 import com.authserver.repository.VerificationTokenRepository;
-import com.authserver.util.JwtUtil;
 import com.authserver.util.OtpUtil;
+import com.authserver.util.ParsedToken;
+import com.authserver.util.TimedTransactionTemplate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
+    private static final int MAX_FAILED_LOGIN_ATTEMPTS = 5;
+
     private final UserRepository userRepository;
     private final VerificationTokenRepository tokenRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final JwtUtil jwtUtil;
+    private final PasswordHashingService passwordHashingService;
+    private final TimedTransactionTemplate transactions;
+    private final TokenService tokenService;
     private final OtpUtil otpUtil;
     private final EmailService emailService;
     private final SmsService smsService;
     private final RateLimitService rateLimitService;
     private final TwoFactorAuthService twoFactorAuthService;
+    private final HeavyHitterService heavyHitterService;
+    private final UserCredentialsCache userCache;
+    private final LastLoginRecorder lastLoginRecorder;
+    private final RegisteredIdentifierFilter identifierFilter;
 
-    @Transactional
     public ApiResponse<Void> registerWithEmail(RegisterRequest request) {
         if (request.getEmail() == null || request.getEmail().isEmpty()) {
             throw new CustomException("Email is required");
         }
 
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (identifierFilter.isRegistered(request.getEmail(), userRepository::existsByEmail)) {
             throw new CustomException("Email already registered");
         }
 
-        User user = User.builder()
-            .email(request.getEmail())
-            .passwordHash(passwordEncoder.encode(request.getPassword()))
-            .emailVerified(false)
-            .build();
+        // Hash before opening the transaction so no connection is held while BCrypt runs
+        String passwordHash = passwordHashingService.encode(request.getPassword());
 
-        userRepository.save(user);
-
-        // Send verification email
-        String token = UUID.randomUUID().toString();
-        VerificationToken verificationToken = VerificationToken.builder()
-            .user(user)
-            .token(token)
-            .type(VerificationToken.TokenType.EMAIL_VERIFICATION)
-            .expiresAt(LocalDateTime.now().plusHours(24))
-            .build();
-        tokenRepository.save(verificationToken);
+        // The pre-check can race another registration; the unique key settles it
+        String token;
+        try {
+            token = transactions.execute("register-email", () -> {
+                User user = User.builder()
+                    .email(request.getEmail())
+                    .passwordHash(passwordHash)
+                    .emailVerified(false)
+                    .build();
+
+                saveUser(user);
+
+                String verificationToken = UUID.randomUUID().toString();
+                tokenRepository.save(VerificationToken.builder()
+                    .user(user)
+                    .token(verificationToken)
+                    .type(VerificationToken.TokenType.EMAIL_VERIFICATION)
+                    .expiresAt(LocalDateTime.now().plusHours(24))
+                    .build());
+                return verificationToken;
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new CustomException("Email already registered");
+        }
 
-        emailService.sendVerificationEmail(user.getEmail(), token);
+        log.info("User registered with email: {}", request.getEmail());
 
-        log.info("User registered with email: {}", user.getEmail());
+        // Sent after commit so SMTP latency never holds a connection; the account exists either way,
+        // so a failed send is left to resend-verification rather than failing the registration
+        try {
+            emailService.sendVerificationEmail(request.getEmail(), token);
+        } catch (RuntimeException e) {
+            log.warn("Verification email to {} not sent: {}", request.getEmail(), e.getMessage());
+            return ApiResponse.success("Registration successful, but the verification email could not be sent. Please request a new one.", null);
+        }
         return ApiResponse.success("Registration successful. Please check your email to verify your account.", null);
     }
 
-    @Transactional
     public ApiResponse<Void> registerWithPhone(RegisterRequest request) {
         if (request.getPhoneNumber() == null || request.getPhoneNumber().isEmpty()) {
             throw new CustomException("Phone number is required");
         }
 
-        if (userRepository.existsByPhoneNumber(request.getPhoneNumber())) {
+        if (identifierFilter.isRegistered(request.getPhoneNumber(), userRepository::existsByPhoneNumber)) {
             throw new CustomException("Phone number already registered");
         }
 
-        User user = User.builder()
-            .phoneNumber(request.getPhoneNumber())
-            .passwordHash(passwordEncoder.encode(request.getPassword()))
-            .phoneVerified(false)
-            .build();
+        String passwordHash = passwordHashingService.encode(request.getPassword());
 
-        userRepository.save(user);
+        try {
+            transactions.run("register-phone", () -> {
+                User user = User.builder()
+                    .phoneNumber(request.getPhoneNumber())
+                    .passwordHash(passwordHash)
+                    .phoneVerified(false)
+                    .build();
+
+                saveUser(user);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new CustomException("Phone number already registered");
+        }
 
-        log.info("User registered with phone: {}", user.getPhoneNumber());
+        log.info("User registered with phone: {}", request.getPhoneNumber());
         return ApiResponse.success("Registration successful. Please verify your phone number.", null);
     }
 
-    @Transactional
-    public ApiResponse<TokenResponse> login(LoginRequest request, String clientIp) {
-        rateLimitService.checkRateLimit(clientIp, "LOGIN");
+    public CompletableFuture<ApiResponse<TokenResponse>> login(LoginRequest request, String clientIp) {
+        // Known abusers are turned away before they cost a rate-limit entry, a query or a hash
+        heavyHitterService.checkBlocked(clientIp, request.getIdentifier());
+        rateLimitService.checkRateLimit(clientIp, RateLimitAction.LOGIN);
 
-        User user = findUserByIdentifier(request.getIdentifier());
+        UserCredentials user = findUserByIdentifier(request.getIdentifier()).orElse(null);
+        if (user == null) {
+            heavyHitterService.recordFailedLogin(clientIp, request.getIdentifier());
+            throw new UnauthorizedException("Invalid credentials");
+        }
 
         if (user.isAccountLocked()) {
             throw new UnauthorizedException("Account is locked. Please contact support.");
         }
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+        return passwordHashingService.matchesAsync(request.getPassword(), user.getPasswordHash())
+            .thenApply(matches -> completeLogin(user, request, clientIp, matches));
+    }
+
+    private ApiResponse<TokenResponse> completeLogin(UserCredentials user, LoginRequest request, String clientIp, boolean passwordMatches) {
+        if (!passwordMatches) {
+            heavyHitterService.recordFailedLogin(clientIp, request.getIdentifier());
             handleFailedLogin(user);
             throw new UnauthorizedException("Invalid credentials");
         }
@@ -126,16 +172,11 @@ public class UserService {
         }
 
         handleSuccessfulLogin(user);
-        rateLimitService.resetRateLimit(clientIp, "LOGIN");
-
-        String identifier = user.getEmail() != null ? user.getEmail() : user.getPhoneNumber();
-        TokenResponse tokenResponse = TokenResponse.builder()
-            .accessToken(jwtUtil.generateAccessToken(identifier, user.getId().toString()))
-            .refreshToken(jwtUtil.generateRefreshToken(identifier, user.getId().toString()))
-            .tokenType("Bearer")
-            .expiresIn(3600L)
-            .scope("openid profile email")
-            .build();
+        rateLimitService.resetRateLimit(clientIp, RateLimitAction.LOGIN);
+
+        String identifier = user.getIdentifier();
+        upgradePasswordHashIfNeeded(user, request.getPassword(), identifier);
+        TokenResponse tokenResponse = tokenService.issueTokens(identifier, user.getId().toString());
 
         log.info("User logged in: {}", identifier);
         return ApiResponse.success("Login successful", tokenResponse);
@@ -144,25 +185,17 @@ public class UserService {
     @Transactional
     public ApiResponse<TokenResponse> refreshToken(String refreshToken) {
         try {
-            String username = jwtUtil.extractUsername(refreshToken);
-            String userId = jwtUtil.extractUserId(refreshToken);
-            String tokenType = jwtUtil.extractTokenType(refreshToken);
+            ParsedToken parsed = tokenService.resolve(refreshToken);
 
-            if (!"refresh".equals(tokenType)) {
+            if (!parsed.isRefreshToken()) {
                 throw new UnauthorizedException("Invalid token type");
             }
 
-            if (jwtUtil.isTokenExpired(refreshToken)) {
+            if (parsed.isExpired()) {
                 throw new UnauthorizedException("Refresh token expired");
             }
 
-            TokenResponse tokenResponse = TokenResponse.builder()
-                .accessToken(jwtUtil.generateAccessToken(username, userId))
-                .refreshToken(jwtUtil.generateRefreshToken(username, userId))
-                .tokenType("Bearer")
-                .expiresIn(3600L)
-                .scope("openid profile email")
-                .build();
+            TokenResponse tokenResponse = tokenService.rotate(refreshToken, parsed);
 
             return ApiResponse.success("Token refreshed successfully", tokenResponse);
         } catch (Exception e) {
@@ -189,7 +222,7 @@ public class UserService {
 
         User user = verificationToken.getUser();
         user.setEmailVerified(true);
-        userRepository.save(user);
+        saveUser(user);
 
         verificationToken.setUsed(true);
         tokenRepository.save(verificationToken);
@@ -227,7 +260,7 @@ public class UserService {
 
     @Transactional
     public ApiResponse<Void> sendOtp(SendOtpRequest request, String clientIp) {
-        rateLimitService.checkRateLimit(clientIp, "SMS_OTP");
+        rateLimitService.checkRateLimit(clientIp, RateLimitAction.SMS_OTP);
 
         User user = userRepository.findByPhoneNumber(request.getPhoneNumber())
             .orElseThrow(() -> new CustomException("User not found"));
@@ -259,7 +292,8 @@ public class UserService {
         User user = userRepository.findByPhoneNumber(request.getPhoneNumber())
             .orElseThrow(() -> new CustomException("User not found"));
 
-        VerificationToken otpToken = tokenRepository.findByToken(request.getOtpCode())
+        VerificationToken otpToken = tokenRepository.findByTokenAndUserAndType(
+                request.getOtpCode(), user, VerificationToken.TokenType.SMS_OTP)
             .orElseThrow(() -> new CustomException("Invalid OTP"));
 
         if (otpToken.isUsed()) {
@@ -279,7 +313,7 @@ public class UserService {
         }
 
         user.setPhoneVerified(true);
-        userRepository.save(user);
+        saveUser(user);
 
         otpToken.setUsed(true);
         tokenRepository.save(otpToken);
@@ -311,7 +345,6 @@ public class UserService {
         return ApiResponse.success("Password reset link sent to your email", null);
     }
 
-    @Transactional
     public ApiResponse<Void> resetPassword(ResetPasswordRequest request) {
         VerificationToken resetToken = tokenRepository.findByToken(request.getToken())
             .orElseThrow(() -> new CustomException("Invalid or expired token"));
@@ -328,47 +361,90 @@ public class UserService {
             throw new CustomException("Invalid token type");
         }
 
-        User user = resetToken.getUser();
-        user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
-        user.setFailedLoginAttempts(0);
-        user.setAccountLocked(false);
-        userRepository.save(user);
+        UUID userId = resetToken.getUser().getId();
+        String passwordHash = passwordHashingService.encode(request.getNewPassword());
 
-        resetToken.setUsed(true);
-        tokenRepository.save(resetToken);
+        String email = transactions.execute("reset-password", () -> {
+            // Claim the token first so two concurrent resets cannot both succeed
+            if (tokenRepository.markUsed(resetToken.getId()) == 0) {
+                throw new CustomException("Token already used");
+            }
+
+            User user = userRepository.findById(userId)
+                .orElseThrow(() -> new CustomException("Invalid or expired token"));
+            user.setPasswordHash(passwordHash);
+            user.setFailedLoginAttempts(0);
+            user.setAccountLocked(false);
+            saveUser(user);
+            return user.getEmail();
+        });
 
-        log.info("Password reset successful for user: {}", user.getEmail());
+        log.info("Password reset successful for user: {}", email);
         return ApiResponse.success("Password reset successful", null);
     }
 
-    private User findUserByIdentifier(String identifier) {
-        return userRepository.findByEmail(identifier)
-            .or(() -> userRepository.findByPhoneNumber(identifier))
-            .orElseThrow(() -> new UnauthorizedException("Invalid credentials"));
+    private Optional<UserCredentials> findUserByIdentifier(String identifier) {
+        if (!identifierFilter.mightContain(identifier)) {
+            return Optional.empty();
+        }
+        return userCache.findByIdentifier(identifier, key -> {
+            List<UserCredentials> matches = userRepository.findCredentialsByIdentifier(key);
+            if (matches.isEmpty()) {
+                identifierFilter.recordFalsePositive();
+            }
+            // An email match wins, as when email and phone were looked up in that order
+            return matches.stream()
+                .filter(candidate -> key.equals(candidate.getEmail()))
+                .findFirst()
+                .or(() -> matches.stream().findFirst());
+        });
+    }
+
+    private void saveUser(User user) {
+        identifierFilter.add(user);
+        userRepository.save(user);
+        userCache.invalidate(user);
     }
 
-    private void handleFailedLogin(User user) {
-        user.setFailedLoginAttempts(user.getFailedLoginAttempts() + 1);
-        
-        if (user.getFailedLoginAttempts() >= 5) {
-            user.setAccountLocked(true);
-            log.warn("Account locked due to too many failed login attempts: {}", 
-                user.getEmail() != null ? user.getEmail() : user.getPhoneNumber());
+    private void handleFailedLogin(UserCredentials user) {
+        int attempts = userRepository.incrementFailedLoginAttempts(user.getId(), MAX_FAILED_LOGIN_ATTEMPTS);
+        userCache.invalidate(user);
+
+        if (attempts == MAX_FAILED_LOGIN_ATTEMPTS) {
+            log.warn("Account locked due to too many failed login attempts: {}", user.getIdentifier());
         }
-        
-        userRepository.save(user);
     }
 
-    private void handleSuccessfulLogin(User user) {
-        user.setFailedLoginAttempts(0);
-        user.setLastLogin(LocalDateTime.now());
-        userRepository.save(user);
+    private void handleSuccessfulLogin(UserCredentials user) {
+        // Always ask the database: the cached snapshot can miss a failure counted on another instance,
+        // and the update matches no row (no write) when the counter is already zero
+        if (userRepository.resetFailedLoginAttempts(user.getId()) > 0) {
+            userCache.invalidate(user);
+        }
+        lastLoginRecorder.record(user.getId());
     }
 
-    @Scheduled(cron = "0 0 0 * * *") // Daily at midnight
-    @Transactional
-    public void cleanupExpiredTokens() {
-        tokenRepository.deleteByExpiresAtBefore(LocalDateTime.now());
-        log.info("Cleaned up expired verification tokens");
+    // Rehash with the current algorithm/cost; conditional on the old hash so a concurrent reset wins
+    private void upgradePasswordHashIfNeeded(UserCredentials user, String rawPassword, String identifier) {
+        String currentHash = user.getPasswordHash();
+        if (!passwordHashingService.needsRehash(currentHash)) {
+            return;
+        }
+
+        try {
+            passwordHashingService.encodeAsync(rawPassword)
+                .thenAccept(newHash -> {
+                    if (userRepository.updatePasswordHash(user.getId(), currentHash, newHash, LocalDateTime.now()) > 0) {
+                        userCache.invalidate(user);
+                        log.info("Password hash upgraded for user: {}", identifier);
+                    }
+                })
+                .exceptionally(e -> {
+                    log.warn("Password hash upgrade failed for user {}: {}", identifier, e.getMessage());
+                    return null;
+                });
+        } catch (RateLimitExceededException e) {
+            log.debug("Hashing pool busy, deferring password hash upgrade for user: {}", identifier);
+        }
     }
 }
@@ -0,0 +1,19 @@
+package com.authserver.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Client address used for rate limits and failed-login blocks. Forwarded headers are resolved by
+ * Tomcat's RemoteIpValve (server.forward-headers-strategy=native), which only honours X-Forwarded-For
+ * hops appended by proxies matching server.tomcat.remoteip.internal-proxies, so a client cannot pick
+ * the address it is counted under.
+ */
+public final class ClientIpUtil {
+
+    private ClientIpUtil() {
+    }
+
+    public static String resolve(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+}
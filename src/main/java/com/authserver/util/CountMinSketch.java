@@ -0,0 +1,74 @@
+package com.authserver.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Count-Min sketch over strings. Memory is fixed at depth x width counters regardless of
+ * how many distinct keys are seen; estimates never undercount and overcount by at most
+ * e/width of the total with probability 1 - e^-depth. Uses conservative update, which only raises the
+ * counters that hold the current minimum and noticeably tightens estimates for skewed streams.
+ */
+public class CountMinSketch {
+
+    private final AtomicLongArray counters;
+    private final int depth;
+    private final int width;
+    private final int mask;
+
+    public CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.depth = Math.max(1, depth);
+        this.counters = new AtomicLongArray(this.width * this.depth);
+    }
+
+    // Counts one occurrence and returns the new estimate
+    public long add(String value) {
+        long hash = StringHash.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, counters.get(slot(i, h1, h2)));
+        }
+        long target = estimate + 1;
+        for (int i = 0; i < depth; i++) {
+            int slot = slot(i, h1, h2);
+            long current = counters.get(slot);
+            while (current < target && !counters.compareAndSet(slot, current, target)) {
+                current = counters.get(slot);
+            }
+        }
+        return target;
+    }
+
+    public long estimate(String value) {
+        long hash = StringHash.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, counters.get(slot(i, h1, h2)));
+        }
+        return estimate;
+    }
+
+    // Halves every counter so old traffic fades out; counters are not frozen while this runs
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long current = counters.get(i);
+            while (current != 0 && !counters.compareAndSet(i, current, current >>> 1)) {
+                current = counters.get(i);
+            }
+        }
+    }
+
+    public long sizeInBytes() {
+        return (long) counters.length() * Long.BYTES;
+    }
+
+    private int slot(int row, int h1, int h2) {
+        return row * width + ((h1 + (row + 1) * h2) & mask);
+    }
+}
@@ -0,0 +1,229 @@
+package com.authserver.util;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Mints HMAC-signed JWTs for the fixed claim shape used by JwtUtil without going through
+ * jjwt's claims map and Jackson. Output is byte-for-byte what jjwt produces for the same
+ * claims: header {"alg":...}, then payload {"type","userId",["jti","fid",]"sub","iat","exp"} in that order.
+ */
+final class HmacTokenWriter {
+
+    private static final byte[] BASE64URL =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TYPE_FIELD = ascii("{\"type\":\"");
+    private static final byte[] USER_ID_FIELD = ascii("\",\"userId\":\"");
+    private static final byte[] TOKEN_ID_FIELD = ascii("\",\"jti\":\"");
+    private static final byte[] FAMILY_ID_FIELD = ascii("\",\"fid\":\"");
+    private static final byte[] SUBJECT_FIELD = ascii("\",\"sub\":\"");
+    private static final byte[] ISSUED_AT_FIELD = ascii("\",\"iat\":");
+    private static final byte[] EXPIRATION_FIELD = ascii(",\"exp\":");
+
+    private final SecretKey key;
+    private final byte[] encodedHeader;
+    private final ThreadLocal<Buffers> buffers;
+
+    HmacTokenWriter(SecretKey key, String algorithmId) {
+        this.key = key;
+        byte[] header = ascii("{\"alg\":\"" + algorithmId + "\"}");
+        byte[] encoded = new byte[base64Length(header.length) + 1];
+        int length = base64(header, header.length, encoded, 0);
+        encoded[length] = '.';
+        this.encodedHeader = encoded;
+        this.buffers = ThreadLocal.withInitial(() -> new Buffers(newMac()));
+    }
+
+    String write(String type, String userId, String tokenId, String familyId, String subject,
+                 long issuedAtMillis, long expiresAtMillis) {
+        Buffers b = buffers.get();
+
+        b.json = 0;
+        b.append(TYPE_FIELD);
+        b.appendEscaped(type);
+        b.append(USER_ID_FIELD);
+        b.appendEscaped(userId);
+        if (tokenId != null) {
+            b.append(TOKEN_ID_FIELD);
+            b.appendEscaped(tokenId);
+        }
+        if (familyId != null) {
+            b.append(FAMILY_ID_FIELD);
+            b.appendEscaped(familyId);
+        }
+        b.append(SUBJECT_FIELD);
+        b.appendEscaped(subject);
+        b.append(ISSUED_AT_FIELD);
+        b.appendLong(issuedAtMillis / 1000);
+        b.append(EXPIRATION_FIELD);
+        b.appendLong(expiresAtMillis / 1000);
+        b.ensureJson(1);
+        b.jsonBytes[b.json++] = '}';
+
+        Mac mac = b.mac;
+        int signatureLength = mac.getMacLength();
+        int signingInputLength = encodedHeader.length + base64Length(b.json);
+        byte[] out = b.ensureOut(signingInputLength + 1 + base64Length(signatureLength));
+
+        System.arraycopy(encodedHeader, 0, out, 0, encodedHeader.length);
+        base64(b.jsonBytes, b.json, out, encodedHeader.length);
+
+        try {
+            mac.update(out, 0, signingInputLength);
+            mac.doFinal(b.signature, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+
+        out[signingInputLength] = '.';
+        int end = signingInputLength + 1 + base64(b.signature, signatureLength, out, signingInputLength + 1);
+        return new String(out, 0, end, StandardCharsets.ISO_8859_1);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(key.getAlgorithm());
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + key.getAlgorithm(), e);
+        }
+    }
+
+    private static int base64Length(int length) {
+        return (length / 3) * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+    }
+
+    // Unpadded base64url of src[0, length) into dst at offset; returns the number of bytes written
+    private static int base64(byte[] src, int length, byte[] dst, int offset) {
+        int d = offset;
+        int s = 0;
+        int whole = length - length % 3;
+        while (s < whole) {
+            int bits = (src[s++] & 0xff) << 16 | (src[s++] & 0xff) << 8 | (src[s++] & 0xff);
+            dst[d++] = BASE64URL[(bits >>> 18) & 0x3f];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3f];
+            dst[d++] = BASE64URL[(bits >>> 6) & 0x3f];
+            dst[d++] = BASE64URL[bits & 0x3f];
+        }
+        int remaining = length - whole;
+        if (remaining > 0) {
+            int bits = (src[s] & 0xff) << 16 | (remaining == 2 ? (src[s + 1] & 0xff) << 8 : 0);
+            dst[d++] = BASE64URL[(bits >>> 18) & 0x3f];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3f];
+            if (remaining == 2) {
+                dst[d++] = BASE64URL[(bits >>> 6) & 0x3f];
+            }
+        }
+        return d - offset;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Buffers {
+
+        private final Mac mac;
+        private final byte[] signature;
+        private byte[] jsonBytes = new byte[256];
+        private byte[] outBytes = new byte[512];
+        private int json;
+
+        private Buffers(Mac mac) {
+            this.mac = mac;
+            this.signature = new byte[mac.getMacLength()];
+        }
+
+        private void ensureJson(int extra) {
+            if (json + extra > jsonBytes.length) {
+                jsonBytes = Arrays.copyOf(jsonBytes, Math.max(jsonBytes.length * 2, json + extra));
+            }
+        }
+
+        private byte[] ensureOut(int length) {
+            if (length > outBytes.length) {
+                outBytes = new byte[Math.max(outBytes.length * 2, length)];
+            }
+            return outBytes;
+        }
+
+        private void append(byte[] bytes) {
+            ensureJson(bytes.length);
+            System.arraycopy(bytes, 0, jsonBytes, json, bytes.length);
+            json += bytes.length;
+        }
+
+        private void appendLong(long value) {
+            ensureJson(20);
+            if (value < 0) {
+                jsonBytes[json++] = '-';
+                value = -value;
+            }
+            int start = json;
+            do {
+                jsonBytes[json++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = json - 1; i < j; i++, j--) {
+                byte tmp = jsonBytes[i];
+                jsonBytes[i] = jsonBytes[j];
+                jsonBytes[j] = tmp;
+            }
+        }
+
+        // Same escaping jjwt's Jackson serializer applies: quotes, backslash, control characters and surrogates
+        private void appendEscaped(String value) {
+            int length = value.length();
+            ensureJson(length * 6);
+            byte[] buf = jsonBytes;
+            int p = json;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x80) {
+                    if (c == '"' || c == '\\') {
+                        buf[p++] = '\\';
+                    }
+                    buf[p++] = (byte) c;
+                } else if (c < 0x20) {
+                    buf[p++] = '\\';
+                    switch (c) {
+                        case '\b' -> buf[p++] = 'b';
+                        case '\t' -> buf[p++] = 't';
+                        case '\n' -> buf[p++] = 'n';
+                        case '\f' -> buf[p++] = 'f';
+                        case '\r' -> buf[p++] = 'r';
+                        default -> {
+                            buf[p++] = 'u';
+                            buf[p++] = '0';
+                            buf[p++] = '0';
+                            buf[p++] = HEX[c >> 4];
+                            buf[p++] = HEX[c & 0xf];
+                        }
+                    }
+                } else if (c < 0x800) {
+                    buf[p++] = (byte) (0xc0 | (c >> 6));
+                    buf[p++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    buf[p++] = '\\';
+                    buf[p++] = 'u';
+                    buf[p++] = HEX[c >> 12];
+                    buf[p++] = HEX[(c >> 8) & 0xf];
+                    buf[p++] = HEX[(c >> 4) & 0xf];
+                    buf[p++] = HEX[c & 0xf];
+                } else {
+                    buf[p++] = (byte) (0xe0 | (c >> 12));
+                    buf[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[p++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            json = p;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.authserver.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Asymmetric signing keys shared by every instance through jwt_signing_keys. The ring is loaded at
+ * startup and reloaded every rotation-check-interval; the signing key is the newest one whose
+ * active_from has passed, so all instances switch at the same moment whichever of them wrote the
+ * row. Creating and retiring keys happens under a transaction-scoped advisory lock, so concurrent
+ * instances never mint competing keys. Private keys are stored AES-GCM encrypted under a key
+ * derived from jwt.secret. Tokens without a kid, signed with jwt.secret before the switch, are
+ * accepted only until the longest token lifetime has passed since the first asymmetric key became
+ * active, or not at all with jwt.signing.accept-hmac-tokens=false.
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+
+    public enum Algorithm {
+        HMAC,
+        ES256,
+        EDDSA
+    }
+
+    // First key of the two-int advisory lock form, as in ClusterJobScheduler
+    private static final int LOCK_NAMESPACE = 0x6b657973; // "keys"
+    private static final int GCM_IV_LENGTH = 12;
+    private static final String SELECT_SQL =
+        "SELECT kid, algorithm, public_key, private_key, active_from, verify_until FROM jwt_signing_keys " +
+        "WHERE verify_until IS NULL OR verify_until > ?";
+    private static final String INSERT_SQL =
+        "INSERT INTO jwt_signing_keys (kid, algorithm, public_key, private_key, active_from) VALUES (?, ?, ?, ?, ?)";
+    private static final String RETIRE_SQL =
+        "UPDATE jwt_signing_keys SET verify_until = ? WHERE kid = ? AND verify_until IS NULL";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM jwt_signing_keys WHERE verify_until <= ?";
+
+    private final Algorithm algorithm;
+    private final Duration rotationInterval;
+    private final Duration verificationGrace;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SecretKeySpec storageKey;
+    private final SecureRandom random = new SecureRandom();
+    private final boolean acceptHmacTokens;
+
+    // kid -> key; a signing key stays here until every token it could have signed has expired.
+    // Replaced wholesale on every reload, so readers always see one consistent snapshot
+    private volatile Map<String, RingKey> keysById = Map.of();
+    private volatile RingKey current;
+    // Only ever moves earlier: the oldest key's rows are deleted long after this instant has passed
+    private volatile Instant hmacTokensUntil = Instant.MAX;
+
+    public JwtKeyRing(@Value("${jwt.signing.algorithm:HMAC}") Algorithm algorithm,
+                      @Value("${jwt.signing.rotation-interval:P7D}") Duration rotationInterval,
+                      @Value("${jwt.expiration}") Long expiration,
+                      @Value("${jwt.refresh-expiration}") Long refreshExpiration,
+                      @Value("${jwt.secret}") String secret,
+                      @Value("${jwt.signing.accept-hmac-tokens:true}") boolean acceptHmacTokens,
+                      JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager) {
+        this.algorithm = algorithm;
+        this.rotationInterval = rotationInterval;
+        this.verificationGrace = Duration.ofMillis(Math.max(expiration, refreshExpiration));
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.storageKey = new SecretKeySpec(sha256("jwt-signing-keys:" + secret), "AES");
+        this.acceptHmacTokens = acceptHmacTokens;
+
+        if (isEnabled()) {
+            maintain(Instant.now());
+            reload(Instant.now());
+            log.info("JWT key ring loaded with {} signing, active kid: {}, {} verification keys",
+                algorithm, current.getKid(), keysById.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return algorithm != Algorithm.HMAC;
+    }
+
+    public SignatureAlgorithm signatureAlgorithm() {
+        return signatureAlgorithm(algorithm);
+    }
+
+    public RingKey signingKey() {
+        return current;
+    }
+
+    // Whether a kid-less token signed with jwt.secret may still be verified in asymmetric mode
+    public boolean acceptsHmacTokens() {
+        return acceptHmacTokens && Instant.now().isBefore(hmacTokensUntil);
+    }
+
+    public PublicKey verificationKey(String kid) {
+        RingKey key = keysById.get(kid);
+        return key != null ? key.getKeyPair().getPublic() : null;
+    }
+
+    // The next key is published ahead of activation so verifiers can fetch it before it is used
+    public List<PublicJwk<?>> publicJwks() {
+        Map<String, RingKey> keys = keysById;
+        List<PublicJwk<?>> jwks = new ArrayList<>(keys.size());
+        for (RingKey key : keys.values()) {
+            jwks.add(Jwks.builder()
+                .key(key.getKeyPair().getPublic())
+                .id(key.getKid())
+                .algorithm(signatureAlgorithm(key.getAlgorithm()).getId())
+                .publicKeyUse("sig")
+                .build());
+        }
+        return jwks;
+    }
+
+    // Every instance runs this; only the first one after a key activates finds anything to write
+    @Scheduled(fixedDelayString = "${jwt.signing.rotation-check-interval:60000}")
+    public void rotate() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        try {
+            maintain(now);
+            RingKey previous = current;
+            reload(now);
+            if (previous != null && !previous.getKid().equals(current.getKid())) {
+                log.info("Rotated JWT signing key from {} to {}", previous.getKid(), current.getKid());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not refresh JWT key ring, keeping {} keys: {}", keysById.size(), e.getMessage());
+        }
+    }
+
+    // Retires superseded keys, drops expired ones and makes sure a current and a next key exist.
+    // Keys of another algorithm (from before a jwt.signing.algorithm change) are retired once this
+    // algorithm's key has been active for a full interval, so a rolling change does not churn keys
+    private void maintain(Instant now) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?, ?)", Object.class,
+                LOCK_NAMESPACE, "jwt_signing_keys".hashCode());
+            jdbcTemplate.update(DELETE_EXPIRED_SQL, Timestamp.from(now));
+
+            List<StoredKey> signing = new ArrayList<>();
+            List<StoredKey> otherAlgorithm = new ArrayList<>();
+            for (StoredKey key : jdbcTemplate.query(SELECT_SQL, (rs, i) -> new StoredKey(rs.getString("kid"),
+                    Algorithm.valueOf(rs.getString("algorithm")), rs.getTimestamp("active_from").toInstant(),
+                    rs.getTimestamp("verify_until")), Timestamp.from(now))) {
+                if (key.verifyUntil == null) {
+                    (key.algorithm == algorithm ? signing : otherAlgorithm).add(key);
+                }
+            }
+            signing.sort(Comparator.comparing(key -> key.activeFrom));
+
+            StoredKey active = null;
+            boolean hasNext = false;
+            for (StoredKey key : signing) {
+                if (key.activeFrom.isAfter(now)) {
+                    hasNext = true;
+                } else {
+                    if (active != null) {
+                        jdbcTemplate.update(RETIRE_SQL, Timestamp.from(now.plus(verificationGrace)), active.kid);
+                    }
+                    active = key;
+                }
+            }
+
+            Instant activeFrom = now;
+            if (active == null) {
+                insert(now);
+            } else {
+                activeFrom = active.activeFrom;
+            }
+            if (!activeFrom.plus(rotationInterval).isAfter(now)) {
+                for (StoredKey key : otherAlgorithm) {
+                    jdbcTemplate.update(RETIRE_SQL, Timestamp.from(now.plus(verificationGrace)), key.kid);
+                }
+            }
+            if (!hasNext) {
+                // After a long outage the scheduled slot may have passed; publish the next key a full interval ahead
+                Instant nextFrom = activeFrom.plus(rotationInterval);
+                insert(nextFrom.isAfter(now) ? nextFrom : now.plus(rotationInterval));
+            }
+        });
+    }
+
+    private void reload(Instant now) {
+        Map<String, RingKey> previous = keysById;
+        Map<String, RingKey> loaded = new HashMap<>();
+        RingKey active = null;
+        Instant firstActiveFrom = Instant.MAX;
+
+        for (StoredRow row : jdbcTemplate.query(SELECT_SQL, (rs, i) -> new StoredRow(rs.getString("kid"),
+                Algorithm.valueOf(rs.getString("algorithm")), rs.getBytes("public_key"), rs.getBytes("private_key"),
+                rs.getTimestamp("active_from").toInstant(), rs.getTimestamp("verify_until")), Timestamp.from(now))) {
+            Instant verifyUntil = row.verifyUntil != null ? row.verifyUntil.toInstant() : null;
+            RingKey cached = previous.get(row.kid);
+            // Decoding and decrypting is only needed for keys this instance has not seen yet
+            RingKey key = cached != null ? cached.withVerifyUntil(verifyUntil) : decode(row, verifyUntil);
+            loaded.put(key.getKid(), key);
+            if (key.getActiveFrom().isBefore(firstActiveFrom)) {
+                firstActiveFrom = key.getActiveFrom();
+            }
+
+            // The newest key already active signs; later ones are published but not yet used
+            if (key.getAlgorithm() == algorithm && !key.getActiveFrom().isAfter(now)
+                    && (active == null || key.getActiveFrom().isAfter(active.getActiveFrom()))) {
+                active = key;
+            }
+        }
+
+        if (active == null) {
+            throw new IllegalStateException("No active " + algorithm + " signing key in jwt_signing_keys");
+        }
+        keysById = Map.copyOf(loaded);
+        current = active;
+        Instant hmacUntil = firstActiveFrom.plus(verificationGrace);
+        if (hmacUntil.isBefore(hmacTokensUntil)) {
+            hmacTokensUntil = hmacUntil;
+        }
+    }
+
+    private void insert(Instant activeFrom) {
+        KeyPair keyPair = algorithm == Algorithm.EDDSA
+            ? Jwks.CRV.Ed25519.keyPair().build()
+            : Jwts.SIG.ES256.keyPair().build();
+        String kid = UUID.randomUUID().toString();
+        jdbcTemplate.update(INSERT_SQL, kid, algorithm.name(), keyPair.getPublic().getEncoded(),
+            encrypt(kid, keyPair.getPrivate().getEncoded()), Timestamp.from(activeFrom));
+        log.info("Created JWT signing key {}, active from {}", kid, activeFrom);
+    }
+
+    private RingKey decode(StoredRow row, Instant verifyUntil) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(row.algorithm == Algorithm.EDDSA ? "EdDSA" : "EC");
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(row.publicKey));
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decrypt(row.kid, row.privateKey)));
+            return new RingKey(row.kid, row.algorithm, new KeyPair(publicKey, privateKey), row.activeFrom, verifyUntil);
+        } catch (GeneralSecurityException e) {
+            // Most likely jwt.secret differs from the one the key was stored under
+            throw new IllegalStateException("Cannot read JWT signing key " + row.kid, e);
+        }
+    }
+
+    // IV followed by ciphertext; the kid is bound as associated data so rows cannot be swapped
+    private byte[] encrypt(String kid, byte[] plaintext) {
+        try {
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, storageKey, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            return ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot encrypt JWT signing key", e);
+        }
+    }
+
+    private byte[] decrypt(String kid, byte[] stored) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, storageKey, new GCMParameterSpec(128, stored, 0, GCM_IV_LENGTH));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher.doFinal(stored, GCM_IV_LENGTH, stored.length - GCM_IV_LENGTH);
+    }
+
+    private static SignatureAlgorithm signatureAlgorithm(Algorithm algorithm) {
+        return algorithm == Algorithm.EDDSA ? Jwts.SIG.EdDSA : Jwts.SIG.ES256;
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class StoredKey {
+        private final String kid;
+        private final Algorithm algorithm;
+        private final Instant activeFrom;
+        private final Timestamp verifyUntil;
+    }
+
+    @AllArgsConstructor
+    private static final class StoredRow {
+        private final String kid;
+        private final Algorithm algorithm;
+        private final byte[] publicKey;
+        private final byte[] privateKey;
+        private final Instant activeFrom;
+        private final Timestamp verifyUntil;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class RingKey {
+
+        private final String kid;
+        private final Algorithm algorithm;
+        private final KeyPair keyPair;
+        private final Instant activeFrom;
+        private final Instant verifyUntil;
+
+        public PrivateKey getPrivateKey() {
+            return keyPair.getPrivate();
+        }
+
+        RingKey withVerifyUntil(Instant verifyUntil) {
+            return new RingKey(kid, algorithm, keyPair, activeFrom, verifyUntil);
+        }
+    }
+}
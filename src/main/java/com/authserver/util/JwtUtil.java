@@ -2,85 +2,162 @@ package com.authserver.util;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.MacAlgorithm;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.PublicKey;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
-
-    @Value("${jwt.expiration}")
-    private Long expiration;
-
-    @Value("${jwt.refresh-expiration}")
-    private Long refreshExpiration;
+    private final long expiration;
+    private final long refreshExpiration;
+
+    // Key material and parser are immutable and thread-safe, so they are built once and shared
+    private final SecretKey signingKey;
+    private final MacAlgorithm signingAlgorithm;
+    private final JwtParser parser;
+    private final VerifiedTokenCache tokenCache;
+    private final JwtKeyRing keyRing;
+    private final HmacTokenWriter tokenWriter;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration}") Long expiration,
+                   @Value("${jwt.refresh-expiration}") Long refreshExpiration,
+                   VerifiedTokenCache tokenCache,
+                   JwtKeyRing keyRing) {
+        this.tokenCache = tokenCache;
+        this.keyRing = keyRing;
+        this.expiration = expiration;
+        this.refreshExpiration = refreshExpiration;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.signingAlgorithm = macAlgorithmFor(signingKey);
+        this.parser = keyRing.isEnabled()
+                ? Jwts.parser().keyLocator(this::locateVerificationKey).build()
+                : Jwts.parser().verifyWith(signingKey).build();
+        this.tokenWriter = keyRing.isEnabled() ? null : new HmacTokenWriter(signingKey, signingAlgorithm.getId());
+    }
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // Keys.hmacShaKeyFor picks the strongest HMAC the secret length allows; keep signing on that algorithm
+    private static MacAlgorithm macAlgorithmFor(SecretKey key) {
+        return switch (key.getAlgorithm()) {
+            case "HmacSHA512" -> Jwts.SIG.HS512;
+            case "HmacSHA384" -> Jwts.SIG.HS384;
+            default -> Jwts.SIG.HS256;
+        };
     }
 
     public String generateAccessToken(String username, String userId) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", userId);
-        claims.put("type", "access");
-        return createToken(claims, username, expiration);
+        return createToken(ParsedToken.TYPE_ACCESS, userId, null, null, username, expiration);
     }
 
     public String generateRefreshToken(String username, String userId) {
-        Map<String, Object> claims = new HashMap<>();
+        return generateRefreshToken(username, userId, UUID.randomUUID().toString(), UUID.randomUUID().toString());
+    }
+
+    // Refresh tokens carry a jti and the id of the rotation family they belong to
+    public String generateRefreshToken(String username, String userId, String tokenId, String familyId) {
+        return createToken(ParsedToken.TYPE_REFRESH, userId, tokenId, familyId, username, refreshExpiration);
+    }
+
+    private String createToken(String type, String userId, String tokenId, String familyId,
+                               String subject, long expiration) {
+        // jjwt drops blank claims, so only the common non-blank shape takes the hand-rolled path
+        if (tokenWriter != null && userId != null && !userId.isBlank() && subject != null && !subject.isBlank()
+                && (tokenId == null || !tokenId.isBlank()) && (familyId == null || !familyId.isBlank())) {
+            long now = System.currentTimeMillis();
+            return tokenWriter.write(type, userId, tokenId, familyId, subject, now, now + expiration);
+        }
+
+        // Insertion order matches the claim order HmacTokenWriter emits
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("type", type);
         claims.put("userId", userId);
-        claims.put("type", "refresh");
-        return createToken(claims, username, refreshExpiration);
+        if (tokenId != null) {
+            claims.put("jti", tokenId);
+        }
+        if (familyId != null) {
+            claims.put("fid", familyId);
+        }
+        return createToken(claims, subject, expiration);
     }
 
-    private String createToken(Map<String, Object> claims, String subject, Long expiration) {
+    private String createToken(Map<String, Object> claims, String subject, long expiration) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .claims(claims)
                 .subject(subject)
                 .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .expiration(expiryDate);
+
+        if (keyRing.isEnabled()) {
+            JwtKeyRing.RingKey ringKey = keyRing.signingKey();
+            return builder
+                    .header().keyId(ringKey.getKid()).and()
+                    .signWith(ringKey.getPrivateKey(), keyRing.signatureAlgorithm())
+                    .compact();
+        }
+        return builder
+                .signWith(signingKey, signingAlgorithm)
                 .compact();
     }
 
+    // O(1) kid lookup; tokens without a kid were minted in HMAC mode and are only accepted during the
+    // transition window, after which the shared secret can no longer mint accepted tokens
+    private Key locateVerificationKey(Header header) {
+        String kid = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (kid == null) {
+            if (!keyRing.acceptsHmacTokens()) {
+                throw new UnsupportedJwtException("Tokens without a key id are no longer accepted");
+            }
+            return signingKey;
+        }
+        PublicKey key = keyRing.verificationKey(kid);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown signing key: " + kid);
+        }
+        return key;
+    }
+
+    // Verifies the signature once; throws ExpiredJwtException/JwtException like the extract* methods.
+    // Tokens already verified are served from the cache until their own exp when it is enabled.
+    public ParsedToken parseToken(String token) {
+        return tokenCache.get(token, t -> ParsedToken.from(extractClaims(t)));
+    }
+
     public String extractUsername(String token) {
-        return extractClaims(token).getSubject();
+        return parseToken(token).getSubject();
     }
 
     public String extractUserId(String token) {
-        return extractClaims(token).get("userId", String.class);
+        return parseToken(token).getUserId();
     }
 
     public String extractTokenType(String token) {
-        return extractClaims(token).get("type", String.class);
+        return parseToken(token).getType();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaims(token).getExpiration();
+        return parseToken(token).getExpiration();
     }
 
     private Claims extractClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     public boolean isTokenExpired(String token) {
         try {
-            return extractExpiration(token).before(new Date());
+            return parseToken(token).isExpired();
         } catch (ExpiredJwtException e) {
             return true;
         }
@@ -88,8 +165,8 @@ public class JwtUtil {
 
     public boolean validateToken(String token, String username) {
         try {
-            final String extractedUsername = extractUsername(token);
-            return (extractedUsername.equals(username) && !isTokenExpired(token));
+            ParsedToken parsed = parseToken(token);
+            return parsed.getSubject().equals(username) && !parsed.isExpired();
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
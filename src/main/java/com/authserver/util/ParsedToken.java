@@ -0,0 +1,45 @@
+package com.authserver.util;
+
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+@Getter
+@AllArgsConstructor
+public class ParsedToken {
+
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
+    private final String subject;
+    private final String userId;
+    private final String type;
+    private final Date expiration;
+    private final String tokenId;
+    private final String familyId;
+
+    static ParsedToken from(Claims claims) {
+        return new ParsedToken(
+            claims.getSubject(),
+            claims.get("userId", String.class),
+            claims.get("type", String.class),
+            claims.getExpiration(),
+            claims.getId(),
+            claims.get("fid", String.class)
+        );
+    }
+
+    public boolean isAccessToken() {
+        return TYPE_ACCESS.equals(type);
+    }
+
+    public boolean isRefreshToken() {
+        return TYPE_REFRESH.equals(type);
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.getTime() < System.currentTimeMillis();
+    }
+}
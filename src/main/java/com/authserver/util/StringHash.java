@@ -0,0 +1,26 @@
+package com.authserver.util;
+
+/**
+ * Fast non-cryptographic 64-bit hash for in-memory probabilistic structures. Callers derive several
+ * indexes from the two 32-bit halves (Kirsch-Mitzenmacher double hashing).
+ */
+public final class StringHash {
+
+    private StringHash() {
+    }
+
+    // 64-bit FNV-1a over UTF-16 units, finished with the MurmurHash3 fmix64 avalanche
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,82 @@
+-- Range-partition rate_limit_tracking by window_start and verification_tokens by expires_at, one
+-- partition per day. PartitionMaintenanceService creates partitions ahead of time and enforces
+-- retention by detaching and dropping whole partitions instead of deleting rows.
+
+-- Move the existing tables aside and free their constraint and index names
+ALTER TABLE rate_limit_tracking RENAME TO rate_limit_tracking_old;
+ALTER TABLE rate_limit_tracking_old DROP CONSTRAINT rate_limit_tracking_pkey;
+ALTER TABLE rate_limit_tracking_old DROP CONSTRAINT uk_rate_limit_window;
+
+ALTER TABLE verification_tokens RENAME TO verification_tokens_old;
+ALTER TABLE verification_tokens_old DROP CONSTRAINT verification_tokens_pkey;
+ALTER TABLE verification_tokens_old DROP CONSTRAINT verification_tokens_token_key;
+ALTER TABLE verification_tokens_old DROP CONSTRAINT fk_verification_user;
+DROP INDEX idx_verification_token;
+DROP INDEX idx_verification_user_id;
+DROP INDEX idx_verification_type;
+DROP INDEX idx_verification_expires_at;
+
+-- Unique keys on a partitioned table must include the partition key
+CREATE TABLE rate_limit_tracking (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    identifier VARCHAR(255) NOT NULL,
+    action_type VARCHAR(50) NOT NULL,
+    attempt_count INTEGER DEFAULT 1,
+    window_start TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT rate_limit_tracking_pkey PRIMARY KEY (id, window_start),
+    CONSTRAINT uk_rate_limit_window UNIQUE (identifier, action_type, window_start)
+) PARTITION BY RANGE (window_start);
+
+-- Tokens are random UUIDs, except SMS OTPs which are looked up together with their user
+CREATE TABLE verification_tokens (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    user_id UUID NOT NULL,
+    token VARCHAR(255) NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    used BOOLEAN DEFAULT FALSE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT verification_tokens_pkey PRIMARY KEY (id, expires_at),
+    CONSTRAINT uk_verification_token UNIQUE (token, expires_at),
+    CONSTRAINT fk_verification_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) PARTITION BY RANGE (expires_at);
+
+-- Create indexes
+CREATE INDEX idx_verification_user_id ON verification_tokens(user_id);
+CREATE INDEX idx_verification_type ON verification_tokens(type);
+
+-- Daily partitions from yesterday to a week ahead; the maintenance job keeps extending the range
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR day IN SELECT generate_series(current_date - 1, current_date + 7, interval '1 day')::date LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF rate_limit_tracking FOR VALUES FROM (%L) TO (%L)',
+            'rate_limit_tracking_p' || to_char(day, 'YYYYMMDD'), day, day + 1);
+        EXECUTE format('CREATE TABLE %I PARTITION OF verification_tokens FOR VALUES FROM (%L) TO (%L)',
+            'verification_tokens_p' || to_char(day, 'YYYYMMDD'), day, day + 1);
+    END LOOP;
+END $$;
+
+-- Carry over rows still inside retention; anything older was due for cleanup anyway
+INSERT INTO rate_limit_tracking (id, identifier, action_type, attempt_count, window_start, created_at, updated_at)
+SELECT id, identifier, action_type, attempt_count, window_start, created_at, updated_at
+FROM rate_limit_tracking_old
+WHERE window_start >= current_date - 1;
+
+INSERT INTO verification_tokens (id, user_id, token, type, expires_at, used, created_at)
+SELECT id, user_id, token, type, expires_at, used, created_at
+FROM verification_tokens_old
+WHERE expires_at >= current_date - 1;
+
+DROP TABLE rate_limit_tracking_old;
+DROP TABLE verification_tokens_old;
+
+-- Add comments
+COMMENT ON COLUMN rate_limit_tracking.identifier IS 'IP address or user_id depending on the rate limit type';
+COMMENT ON COLUMN rate_limit_tracking.action_type IS 'Type of action being rate limited (e.g., LOGIN, SMS_OTP, API_REQUEST)';
+COMMENT ON COLUMN rate_limit_tracking.window_start IS 'Start of the fixed window, aligned to a multiple of the window length; partition key';
+COMMENT ON COLUMN verification_tokens.type IS 'Token types: EMAIL_VERIFICATION, PASSWORD_RESET, SMS_OTP';
+COMMENT ON COLUMN verification_tokens.expires_at IS 'Expiry instant; partition key, expired partitions are dropped whole';
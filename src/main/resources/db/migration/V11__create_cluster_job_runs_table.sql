@@ -0,0 +1,17 @@
+-- Create last-run bookkeeping for cluster-coordinated maintenance jobs
+CREATE TABLE cluster_job_runs (
+    job_name VARCHAR(100) PRIMARY KEY,
+    runner VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP NOT NULL,
+    duration_ms BIGINT NOT NULL,
+    processed BIGINT NOT NULL DEFAULT 0,
+    chunks INTEGER NOT NULL DEFAULT 0,
+    error TEXT
+);
+
+-- Add comments
+COMMENT ON COLUMN cluster_job_runs.runner IS 'Instance that held the advisory lock for the last run (pid@host)';
+COMMENT ON COLUMN cluster_job_runs.status IS 'COMPLETED, PARTIAL (stopped at the run time limit) or FAILED';
+COMMENT ON COLUMN cluster_job_runs.processed IS 'Rows processed across all chunks of the last run';
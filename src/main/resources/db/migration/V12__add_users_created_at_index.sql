@@ -0,0 +1,2 @@
+-- RegisteredIdentifierFilter polls for users created since its last sync every few seconds
+CREATE INDEX idx_users_created_at ON users(created_at);
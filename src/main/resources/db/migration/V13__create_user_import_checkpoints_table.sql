@@ -0,0 +1,15 @@
+-- Progress of bulk user imports; updated in the same transaction as each batch, so a restarted
+-- import resumes after the last committed record
+CREATE TABLE user_import_checkpoints (
+    job_id VARCHAR(100) PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    records_read BIGINT NOT NULL DEFAULT 0,
+    imported BIGINT NOT NULL DEFAULT 0,
+    skipped BIGINT NOT NULL DEFAULT 0,
+    invalid BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON COLUMN user_import_checkpoints.records_read IS 'Input records consumed, including invalid ones; a resumed run skips this many';
+COMMENT ON COLUMN user_import_checkpoints.skipped IS 'Valid records whose email or phone number was already registered';
@@ -0,0 +1,2 @@
+-- Incremental user exports select by updated_at range
+CREATE INDEX idx_users_updated_at ON users(updated_at);
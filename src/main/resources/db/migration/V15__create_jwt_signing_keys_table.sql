@@ -0,0 +1,16 @@
+-- Create JWT signing key ring table, shared by every instance (ES256/EdDSA signing only)
+CREATE TABLE jwt_signing_keys (
+    kid VARCHAR(64) PRIMARY KEY,
+    algorithm VARCHAR(10) NOT NULL,
+    public_key BYTEA NOT NULL,
+    private_key BYTEA NOT NULL,
+    active_from TIMESTAMP NOT NULL,
+    verify_until TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Add comments
+COMMENT ON COLUMN jwt_signing_keys.public_key IS 'X.509 SubjectPublicKeyInfo encoding, published at /api/auth/jwks';
+COMMENT ON COLUMN jwt_signing_keys.private_key IS 'PKCS#8 encoding, AES-GCM encrypted under a key derived from jwt.secret (IV || ciphertext)';
+COMMENT ON COLUMN jwt_signing_keys.active_from IS 'Signing starts here; the newest key already active is the one in use';
+COMMENT ON COLUMN jwt_signing_keys.verify_until IS 'Set when superseded; the key verifies tokens until then and is deleted after';
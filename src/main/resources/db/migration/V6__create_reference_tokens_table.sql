@@ -0,0 +1,18 @@
+-- Create reference tokens table (optional persistence for opaque tokens)
+CREATE TABLE reference_tokens (
+    token_hash VARCHAR(64) PRIMARY KEY,
+    user_id UUID NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_reference_token_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Create indexes
+CREATE INDEX idx_reference_token_user_id ON reference_tokens(user_id);
+CREATE INDEX idx_reference_token_expires_at ON reference_tokens(expires_at);
+
+-- Add comments
+COMMENT ON COLUMN reference_tokens.token_hash IS 'Hex SHA-256 of the opaque token; the token itself is never stored';
+COMMENT ON COLUMN reference_tokens.type IS 'Token types: access, refresh';
@@ -0,0 +1,21 @@
+-- Refresh token ids (jti) and families are not known at V6 time; store them with reference tokens
+ALTER TABLE reference_tokens ADD COLUMN token_id VARCHAR(64);
+ALTER TABLE reference_tokens ADD COLUMN family_id VARCHAR(64);
+
+-- Create refresh token revocations table (exact store behind the in-memory Bloom filter)
+CREATE TABLE refresh_token_revocations (
+    id VARCHAR(64) PRIMARY KEY,
+    kind VARCHAR(20) NOT NULL,
+    family_id VARCHAR(64) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create indexes
+CREATE INDEX idx_refresh_revocation_created_at ON refresh_token_revocations(created_at);
+CREATE INDEX idx_refresh_revocation_expires_at ON refresh_token_revocations(expires_at);
+
+-- Add comments
+COMMENT ON COLUMN refresh_token_revocations.id IS 'Refresh token jti for USED_TOKEN rows, family id for REVOKED_FAMILY rows';
+COMMENT ON COLUMN refresh_token_revocations.kind IS 'Revocation kinds: USED_TOKEN, REVOKED_FAMILY';
+COMMENT ON COLUMN refresh_token_revocations.expires_at IS 'After this instant no token the row refers to can still be valid';
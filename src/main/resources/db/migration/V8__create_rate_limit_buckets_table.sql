@@ -0,0 +1,18 @@
+-- Create shared token buckets for the distributed rate limit engine
+CREATE TABLE rate_limit_buckets (
+    bucket_key VARCHAR(320) PRIMARY KEY,
+    tokens DOUBLE PRECISION NOT NULL,
+    refilled_at_ms BIGINT NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    expires_at TIMESTAMP NOT NULL
+);
+
+-- Create index
+CREATE INDEX idx_rate_limit_buckets_expires_at ON rate_limit_buckets(expires_at);
+
+-- Add comments
+COMMENT ON COLUMN rate_limit_buckets.bucket_key IS 'Action type and identifier, e.g. LOGIN:203.0.113.7';
+COMMENT ON COLUMN rate_limit_buckets.tokens IS 'Tokens left as of refilled_at_ms; refill is computed on read';
+COMMENT ON COLUMN rate_limit_buckets.refilled_at_ms IS 'Epoch millis of the last refill computation';
+COMMENT ON COLUMN rate_limit_buckets.version IS 'Compare-and-swap guard, incremented on every update';
+COMMENT ON COLUMN rate_limit_buckets.expires_at IS 'The bucket is full again by this instant and the row can be dropped';
@@ -0,0 +1,17 @@
+-- Windows are now aligned to a multiple of their length, so every check in a window targets one row
+-- and can be counted with a single INSERT ... ON CONFLICT. Drop duplicates the old read-modify-write
+-- path could leave behind before enforcing uniqueness.
+DELETE FROM rate_limit_tracking a
+USING rate_limit_tracking b
+WHERE a.identifier = b.identifier
+  AND a.action_type = b.action_type
+  AND a.window_start = b.window_start
+  AND a.id < b.id;
+
+-- The unique key replaces the lookup index on the same columns
+DROP INDEX idx_rate_limit_lookup;
+ALTER TABLE rate_limit_tracking
+    ADD CONSTRAINT uk_rate_limit_window UNIQUE (identifier, action_type, window_start);
+
+-- Update comments
+COMMENT ON COLUMN rate_limit_tracking.window_start IS 'Start of the fixed window, aligned to a multiple of the window length';
@@ -0,0 +1,123 @@
+package com.authserver.repository;
+
+import com.authserver.EmbeddedPostgresConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresConfiguration.class)
+// Every increment commits on its own, as it does from JpaRateLimitEngine
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RateLimitTrackingRepositoryTest {
+
+    private static final int THREADS = 16;
+    private static final int CALLS_PER_THREAD = 50;
+
+    @Autowired
+    private RateLimitTrackingRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentIncrementsAreNeitherLostNorDuplicated() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime windowStart = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        String identifier = "concurrent-" + System.nanoTime();
+
+        Set<Integer> returned = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                        Optional<Integer> count = transaction.execute(status ->
+                            repository.incrementAttemptCount(identifier, "login", windowStart, Integer.MAX_VALUE));
+                        returned.add(count.orElseThrow());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int calls = THREADS * CALLS_PER_THREAD;
+        assertEquals(calls, repository.findAttemptCount(identifier, "login", windowStart).orElse(0));
+        // Each call saw its own post-increment value: 1..calls, each exactly once
+        assertEquals(calls, returned.size());
+        assertTrue(returned.stream().allMatch(count -> count >= 1 && count <= calls));
+    }
+
+    @Test
+    void attemptsOverTheCapAreNotCounted() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime windowStart = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        String identifier = "capped-" + System.nanoTime();
+        int maxCount = 100;
+
+        AtomicInteger counted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                        Optional<Integer> count = transaction.execute(status ->
+                            repository.incrementAttemptCount(identifier, "login", windowStart, maxCount));
+                        if (count.isPresent()) {
+                            counted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(maxCount, counted.get());
+        assertEquals(maxCount, repository.findAttemptCount(identifier, "login", windowStart).orElse(0));
+        // A cap of zero does not even create the row
+        assertTrue(repository.incrementAttemptCount("never-" + identifier, "login", windowStart, 0).isEmpty());
+        assertTrue(repository.findAttemptCount("never-" + identifier, "login", windowStart).isEmpty());
+    }
+}
@@ -0,0 +1,161 @@
+package com.authserver.service;
+
+import com.authserver.EmbeddedPostgresConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two engine instances over one database stand in for two nodes sharing rate_limit_buckets.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DistributedRateLimitEngineTest {
+
+    private static final int LEASE_SIZE = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ClusterJobScheduler clusterJobs;
+    private String identifier;
+
+    @BeforeEach
+    void setUp() {
+        clusterJobs = new ClusterJobScheduler(jdbcTemplate, new SimpleMeterRegistry(), 1000, 0, 0, 1000);
+        identifier = "client-" + System.nanoTime();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clusterJobs.shutdown();
+    }
+
+    @Test
+    void leaseServesChecksLocallyUntilUsedUp() {
+        DistributedRateLimitEngine engine = engine(60_000);
+        RateLimitPolicy policy = policy(100);
+
+        for (int i = 0; i < LEASE_SIZE; i++) {
+            assertTrue(engine.tryConsume(identifier, policy) >= 0);
+        }
+        // One insert handed out the whole lease; the row has not been touched since
+        Map<String, Object> row = bucket(policy);
+        assertEquals(0L, row.get("version"));
+        assertEquals(100.0 - LEASE_SIZE, (double) row.get("tokens"), 0.5);
+
+        assertTrue(engine.tryConsume(identifier, policy) >= 0);
+        row = bucket(policy);
+        assertEquals(1L, row.get("version"));
+        assertEquals(100.0 - 2 * LEASE_SIZE, (double) row.get("tokens"), 0.5);
+    }
+
+    @Test
+    void expiredLeaseGoesBackToTheSharedBucket() throws InterruptedException {
+        DistributedRateLimitEngine engine = engine(50);
+        RateLimitPolicy policy = policy(100);
+
+        assertTrue(engine.tryConsume(identifier, policy) >= 0);
+        Thread.sleep(100);
+        assertTrue(engine.tryConsume(identifier, policy) >= 0);
+
+        // The unused rest of the first lease is given up, never handed out twice
+        Map<String, Object> row = bucket(policy);
+        assertEquals(1L, row.get("version"));
+        assertEquals(100.0 - 2 * LEASE_SIZE, (double) row.get("tokens"), 0.5);
+    }
+
+    @Test
+    void deniedOnceTheBucketIsEmptyAndAllowedAgainAfterReset() {
+        DistributedRateLimitEngine engine = engine(60_000);
+        RateLimitPolicy policy = policy(LEASE_SIZE * 2);
+
+        int allowed = 0;
+        for (int i = 0; i < LEASE_SIZE * 3; i++) {
+            if (engine.tryConsume(identifier, policy) >= 0) {
+                allowed++;
+            }
+        }
+        assertEquals(LEASE_SIZE * 2, allowed);
+        assertTrue(engine.tryConsume(identifier, policy) < 0);
+
+        engine.reset(identifier, policy);
+        assertTrue(engine.tryConsume(identifier, policy) >= 0);
+    }
+
+    @Test
+    void twoNodesNeverAdmitMoreThanTheLimitBetweenThem() throws Exception {
+        List<DistributedRateLimitEngine> nodes = List.of(engine(60_000), engine(60_000));
+        int limit = 100;
+        RateLimitPolicy policy = policy(limit);
+
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                DistributedRateLimitEngine node = nodes.get(t % 2);
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+                    while (System.nanoTime() < deadline) {
+                        if (node.tryConsume(identifier, policy) >= 0) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Never over the limit (refill over an hour-long window adds no whole token in a second);
+        // under by at most one partly used lease per node
+        assertTrue(allowed.get() <= limit, "admitted " + allowed.get());
+        assertTrue(allowed.get() >= limit - 2 * LEASE_SIZE, "admitted " + allowed.get());
+        assertTrue((double) bucket(policy).get("tokens") >= 0);
+    }
+
+    private DistributedRateLimitEngine engine(long leaseTtlMillis) {
+        return new DistributedRateLimitEngine(jdbcTemplate, clusterJobs, LEASE_SIZE, 0.1, leaseTtlMillis);
+    }
+
+    private static RateLimitPolicy policy(int limit) {
+        return new RateLimitPolicy("api-request", 0, RateLimitPolicy.Algorithm.TOKEN_BUCKET, limit, Duration.ofHours(1));
+    }
+
+    private Map<String, Object> bucket(RateLimitPolicy policy) {
+        return jdbcTemplate.queryForMap("SELECT tokens, version FROM rate_limit_buckets WHERE bucket_key = ?",
+            policy.getName() + ':' + identifier);
+    }
+}
@@ -0,0 +1,86 @@
+package com.authserver.service;
+
+import com.authserver.dto.TokenResponse;
+import com.authserver.exception.UnauthorizedException;
+import com.authserver.repository.RefreshTokenRevocationRepository;
+import com.authserver.util.JwtKeyRing;
+import com.authserver.util.JwtUtil;
+import com.authserver.util.ParsedToken;
+import com.authserver.util.VerifiedTokenCache;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class TokenServiceTest {
+
+    private static final String SECRET = "test_jwt_secret_key_minimum_256_bits_long_for_hmac_signing_only";
+    private static final long EXPIRATION = 3_600_000;
+    private static final long REFRESH_EXPIRATION = 86_400_000;
+
+    private JwtUtil jwtUtil;
+    private TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        // HMAC mode: the key ring stays disabled and never touches the database
+        jwtUtil = new JwtUtil(SECRET, EXPIRATION, REFRESH_EXPIRATION,
+            new VerifiedTokenCache(false, 0, new SimpleMeterRegistry()), mock(JwtKeyRing.class));
+        // Nothing is flushed in these tests, so used tokens stay in the pending map the checks read first
+        RefreshTokenRevocationService revocations = new RefreshTokenRevocationService(
+            mock(RefreshTokenRevocationRepository.class), null, null, 1000, 0.01, REFRESH_EXPIRATION);
+        tokenService = new TokenService(jwtUtil, mock(ReferenceTokenStore.class), revocations);
+        ReflectionTestUtils.setField(tokenService, "expiration", EXPIRATION);
+        ReflectionTestUtils.setField(tokenService, "refreshExpiration", REFRESH_EXPIRATION);
+        ReflectionTestUtils.setField(tokenService, "rotationEnabled", true);
+    }
+
+    @Test
+    void legacyRefreshTokenCanBeRefreshedTwice() {
+        String legacy = legacyRefreshToken();
+
+        TokenResponse first = refresh(legacy);
+        ParsedToken firstRefresh = jwtUtil.parseToken(first.getRefreshToken());
+        assertNotNull(firstRefresh.getTokenId());
+        assertNotNull(firstRefresh.getFamilyId());
+
+        TokenResponse second = refresh(first.getRefreshToken());
+        assertEquals(firstRefresh.getFamilyId(), jwtUtil.parseToken(second.getRefreshToken()).getFamilyId());
+    }
+
+    @Test
+    void legacyRefreshTokenReplayRevokesItsDescendants() {
+        String legacy = legacyRefreshToken();
+        TokenResponse first = refresh(legacy);
+
+        assertThrows(UnauthorizedException.class, () -> refresh(legacy));
+        assertThrows(UnauthorizedException.class, () -> refresh(first.getRefreshToken()));
+    }
+
+    private TokenResponse refresh(String refreshToken) {
+        return tokenService.rotate(refreshToken, tokenService.resolve(refreshToken));
+    }
+
+    // The shape refresh tokens had before jti and fid were added
+    private static String legacyRefreshToken() {
+        Date now = new Date();
+        return Jwts.builder()
+            .claim("type", ParsedToken.TYPE_REFRESH)
+            .claim("userId", "3f2c7d1e-8a4b-4c6d-9e0f-123456789abc")
+            .subject("user@example.com")
+            .issuedAt(now)
+            .expiration(new Date(now.getTime() + REFRESH_EXPIRATION))
+            .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+            .compact();
+    }
+}
@@ -0,0 +1,84 @@
+package com.authserver.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class HmacTokenWriterTest {
+
+    private static final String SECRET = "test_jwt_secret_key_minimum_512_bits_long_for_hs512_signing_only!";
+    // Fixed so both tokens carry the same iat/exp; far enough ahead that the parser accepts it
+    private static final long ISSUED_AT = 4_102_444_800_123L;
+    private static final long EXPIRES_AT = ISSUED_AT + 3_600_000;
+
+    private SecretKey key;
+    private HmacTokenWriter writer;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        writer = new HmacTokenWriter(key, Jwts.SIG.HS512.getId());
+        // HMAC mode: the key ring stays disabled and never touches the database
+        jwtUtil = new JwtUtil(SECRET, 3_600_000L, 86_400_000L,
+            new VerifiedTokenCache(false, 0, new SimpleMeterRegistry()), mock(JwtKeyRing.class));
+    }
+
+    @Test
+    void accessTokenMatchesJjwt() {
+        assertSameAsJjwt(ParsedToken.TYPE_ACCESS, "0a035490-b79f-4da5-9d46-b2a5f0e0cc4c", null, null, "+905551112233");
+    }
+
+    @Test
+    void refreshTokenMatchesJjwt() {
+        assertSameAsJjwt(ParsedToken.TYPE_REFRESH, "0a035490-b79f-4da5-9d46-b2a5f0e0cc4c",
+            "ea49ea5d-0ef4-4ef3-b149-b2a883fb01ca", "87b32f43-c4b5-4eb3-8480-a55c83a4e949", "user@example.com");
+    }
+
+    @Test
+    void escapedAndNonAsciiClaimsMatchJjwt() {
+        assertSameAsJjwt(ParsedToken.TYPE_ACCESS, "id \"quoted\" \\ back\tslash\u0001",
+            null, null, "müller+€😀@example.com");
+    }
+
+    private void assertSameAsJjwt(String type, String userId, String tokenId, String familyId, String subject) {
+        String written = writer.write(type, userId, tokenId, familyId, subject, ISSUED_AT, EXPIRES_AT);
+
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("type", type);
+        claims.put("userId", userId);
+        if (tokenId != null) {
+            claims.put("jti", tokenId);
+        }
+        if (familyId != null) {
+            claims.put("fid", familyId);
+        }
+        String built = Jwts.builder()
+            .claims(claims)
+            .subject(subject)
+            .issuedAt(new Date(ISSUED_AT))
+            .expiration(new Date(EXPIRES_AT))
+            .signWith(key, Jwts.SIG.HS512)
+            .compact();
+
+        assertEquals(built, written);
+
+        ParsedToken parsed = jwtUtil.parseToken(written);
+        assertEquals(type, parsed.getType());
+        assertEquals(userId, parsed.getUserId());
+        assertEquals(tokenId, parsed.getTokenId());
+        assertEquals(familyId, parsed.getFamilyId());
+        assertEquals(subject, parsed.getSubject());
+    }
+}